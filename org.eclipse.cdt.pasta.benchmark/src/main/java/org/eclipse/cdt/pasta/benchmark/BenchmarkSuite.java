@@ -0,0 +1,35 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collection;
+
+import org.junit.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of this bundle inside the test runtime and writes
+ * the results as JSON. The benchmarks are not forked since a forked JVM would
+ * lack the OSGi runtime and the workbench the benchmarked code needs. The
+ * benchmarks to run and the result file are set with the system properties
+ * pasta.benchmark.include and pasta.benchmark.result.
+ */
+public class BenchmarkSuite {
+
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("pasta.benchmark.include", BenchmarkSuite.class.getPackage().getName() + "\\..*"))
+                .forks(0)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("pasta.benchmark.result", "jmh-result.json"))
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertFalse("No benchmark matched", results.isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.pasta.plugin.EdgePainter;
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.SpatialIndex;
+import org.eclipse.cdt.pasta.plugin.TreeLayout;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Paints the edges of a laid out tree onto an offscreen image the size of a
+ * screen, once only the edges the {@link SpatialIndex} finds in the viewport
+ * as the AST view does and once all edges of the tree. SWT requires painting
+ * on the UI thread, every invocation therefore includes one syncExec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(0)
+public class EdgePaintingBenchmark {
+
+    private static final int VIEWPORT_WIDTH = 1920;
+    private static final int VIEWPORT_HEIGHT = 1080;
+
+    @Param({ "1000", "10000", "100000" })
+    public int size;
+
+    private final TreeLayout layout = new TreeLayout(1f, 20f, 60, 20);
+    private final SpatialIndex index = new SpatialIndex(256, 60);
+    private Display display;
+    private NodeFigure root;
+    private Rectangle viewport;
+    private Image image;
+    private GC gc;
+
+    @Setup
+    public void setUp() {
+        root = TreeShape.BALANCED.buildFigures(size);
+        layout.layout(root);
+        index.addVisible(root);
+        Rectangle bounds = layout.getBounds(root);
+        viewport = new Rectangle(bounds.x + (bounds.width - VIEWPORT_WIDTH) / 2, 0, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        display = PlatformUI.getWorkbench().getDisplay();
+        display.syncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                image = new Image(display, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+                gc = new GC(image);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        display.syncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                gc.dispose();
+                image.dispose();
+            }
+        });
+    }
+
+    @Benchmark
+    public void paintVisibleEdges() {
+        display.syncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                for (NodeFigure figure : index.findEdges(viewport)) {
+                    EdgePainter.paintEdge(gc, figure, -viewport.x);
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    public void paintAllEdges() {
+        display.syncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                Deque<NodeFigure> pending = new ArrayDeque<>(root.getChildren());
+                while (!pending.isEmpty()) {
+                    NodeFigure figure = pending.pop();
+                    EdgePainter.paintEdge(gc, figure, -viewport.x);
+                    for (NodeFigure child : figure.getChildren()) {
+                        pending.push(child);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.TreeLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.jbaum.lib.Node;
+
+/**
+ * Compares the jbaum layout the AST view started out with to the incremental
+ * {@link TreeLayout}, both from scratch and after collapsing or expanding a
+ * single figure at the bottom of the tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(0)
+public class LayoutBenchmark {
+
+    @Param({ "DEEP", "WIDE", "BALANCED" })
+    public TreeShape shape;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    private final TreeLayout layout = new TreeLayout(1f, 20f, 60, 20);
+    private Node<Integer> node;
+    private NodeFigure root;
+    private NodeFigure toggled;
+
+    @Setup
+    public void setUp() {
+        node = shape.buildNodes(size);
+        root = shape.buildFigures(size);
+        layout.layout(root);
+        for (NodeFigure next = root; next != null; next = lastInnerChild(next)) {
+            toggled = next;
+        }
+    }
+
+    private static NodeFigure lastInnerChild(NodeFigure figure) {
+        List<NodeFigure> children = figure.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            if (!children.get(i).getChildren().isEmpty()) {
+                return children.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Node<Integer> jbaumAdjust() {
+        node.adjust(1f, 20f);
+        return node;
+    }
+
+    @Benchmark
+    public NodeFigure treeLayout() {
+        layout.layout(root);
+        return root;
+    }
+
+    @Benchmark
+    public NodeFigure treeLayoutToggle() {
+        toggled.setExpanded(!toggled.isExpanded());
+        layout.update(toggled);
+        return root;
+    }
+}
@@ -0,0 +1,125 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.pasta.plugin.ClassMetadata;
+import org.eclipse.core.runtime.CoreException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the reflection the {@link org.eclipse.cdt.pasta.plugin.NodeWidget}
+ * does to show a node, once for every node of a parsed translation unit:
+ * reading all field values and computing the type hierarchy and method
+ * signatures, through the cached {@link ClassMetadata} and through plain
+ * reflection as the widget did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(0)
+public class ReflectionBenchmark {
+
+    private static final int FUNCTIONS = 50;
+
+    private IASTNode[] nodes;
+
+    @Setup
+    public void setUp() throws CoreException {
+        List<IASTNode> collected = new ArrayList<>();
+        Deque<IASTNode> pending = new ArrayDeque<>();
+        pending.push(SampleSources.parse(SampleSources.generate(FUNCTIONS)));
+        while (!pending.isEmpty()) {
+            IASTNode node = pending.pop();
+            collected.add(node);
+            for (IASTNode child : node.getChildren()) {
+                pending.push(child);
+            }
+        }
+        nodes = collected.toArray(new IASTNode[collected.size()]);
+    }
+
+    @Benchmark
+    public void cachedFields(Blackhole blackhole) {
+        for (IASTNode node : nodes) {
+            for (ClassMetadata.FieldAccessor field : ClassMetadata.of(node.getClass()).getFields()) {
+                blackhole.consume(field.get(node));
+            }
+        }
+    }
+
+    @Benchmark
+    public void cachedHierarchyAndMethods(Blackhole blackhole) {
+        for (IASTNode node : nodes) {
+            ClassMetadata metadata = ClassMetadata.of(node.getClass());
+            blackhole.consume(metadata.getTypeHierarchy());
+            blackhole.consume(metadata.getMethodSignatures());
+        }
+    }
+
+    @Benchmark
+    public void uncachedFields(Blackhole blackhole) throws IllegalAccessException {
+        for (IASTNode node : nodes) {
+            Set<Field> fields = new LinkedHashSet<>(Arrays.asList(node.getClass().getFields()));
+            fields.addAll(Arrays.asList(node.getClass().getDeclaredFields()));
+            for (Field field : fields) {
+                field.setAccessible(true);
+                blackhole.consume(field.get(node));
+            }
+        }
+    }
+
+    @Benchmark
+    public void uncachedHierarchyAndMethods(Blackhole blackhole) {
+        for (IASTNode node : nodes) {
+            List<String> hierarchy = new ArrayList<>();
+            collectSuperclasses(hierarchy, node.getClass());
+            blackhole.consume(hierarchy);
+            List<String> signatures = new ArrayList<>();
+            for (Method method : node.getClass().getMethods()) {
+                if (Modifier.isPublic(method.getModifiers())) {
+                    signatures.add(method.getName() + ";" + method.getReturnType().getSimpleName());
+                }
+            }
+            blackhole.consume(signatures);
+        }
+    }
+
+    private static void collectSuperclasses(List<String> hierarchy, Class<?> type) {
+        if (type == null) {
+            return;
+        }
+        hierarchy.add(type.getSimpleName());
+        collectInterfaces(hierarchy, type);
+        collectSuperclasses(hierarchy, type.getSuperclass());
+    }
+
+    private static void collectInterfaces(List<String> hierarchy, Class<?> type) {
+        for (Class<?> interfaceClass : type.getInterfaces()) {
+            hierarchy.add(interfaceClass.getSimpleName());
+            collectInterfaces(hierarchy, interfaceClass);
+        }
+    }
+}
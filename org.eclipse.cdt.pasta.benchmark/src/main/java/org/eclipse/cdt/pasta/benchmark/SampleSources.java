@@ -0,0 +1,67 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.gnu.cpp.GPPLanguage;
+import org.eclipse.cdt.core.parser.DefaultLogService;
+import org.eclipse.cdt.core.parser.FileContent;
+import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
+import org.eclipse.cdt.core.parser.ScannerInfo;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Generates and parses C++ sources of a given size. The sources do not
+ * include any headers, so they are parsed without a project or an index.
+ */
+public final class SampleSources {
+
+    public static final String FILE_NAME = "/benchmark/sample.cpp";
+
+    private static final String PRELUDE = ""
+            + "namespace sample {\n"
+            + "template<typename T>\n"
+            + "struct Range {\n"
+            + "    T first;\n"
+            + "    T last;\n"
+            + "    Range(T first, T last) : first(first), last(last) {}\n"
+            + "    T size() const { return last - first; }\n"
+            + "    bool contains(T value) const { return value >= first && value < last; }\n"
+            + "};\n"
+            + "int square(int x) { return x * x; }\n";
+
+    private SampleSources() {
+    }
+
+    /**
+     * Returns a translation unit with a small class template and the given
+     * number of functions with loops, branches, calls and local classes.
+     */
+    public static String generate(int functions) {
+        StringBuilder source = new StringBuilder(PRELUDE);
+        for (int i = 0; i < functions; i++) {
+            source.append("int function").append(i).append("(int n, Range<int> range) {\n");
+            source.append("    struct Counter { int count; void add(int v) { count += v; } };\n");
+            source.append("    Counter counter = { 0 };\n");
+            source.append("    for (int i = 0; i < n; ++i) {\n");
+            source.append("        if (range.contains(i) && i % ").append(i % 7 + 2).append(" == 0) {\n");
+            source.append("            counter.add(square(i) + range.size());\n");
+            source.append("        } else {\n");
+            source.append("            counter.add(i > 10 ? -1 : 1);\n");
+            source.append("        }\n");
+            source.append("    }\n");
+            if (i > 0) {
+                source.append("    return counter.count + function").append(i - 1).append("(n / 2, range);\n");
+            } else {
+                source.append("    return counter.count;\n");
+            }
+            source.append("}\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    public static IASTTranslationUnit parse(String source) throws CoreException {
+        FileContent content = FileContent.create(FILE_NAME, source.toCharArray());
+        return GPPLanguage.getDefault().getASTTranslationUnit(content, new ScannerInfo(),
+                IncludeFileContentProvider.getEmptyFilesProvider(), null, 0, new DefaultLogService());
+    }
+}
@@ -0,0 +1,80 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+
+import ch.jbaum.lib.Node;
+
+/**
+ * Shapes of synthetic trees for the layout and painting benchmarks. A tree of
+ * a given shape and size can be built as jbaum {@link Node}s and as expanded
+ * {@link NodeFigure}s with the same structure and widths.
+ * <p>
+ * DEEP is a spine of at most MAX_DEPTH nodes with the remaining nodes hanging
+ * off the spine as leaves, WIDE is a root with all other nodes as its
+ * children, and BALANCED is a complete tree with FAN_OUT children per node.
+ * The depth of DEEP is bounded because both layouts recurse over the levels
+ * of the tree.
+ */
+public enum TreeShape {
+    DEEP, WIDE, BALANCED;
+
+    public static final int MAX_DEPTH = 1000;
+    public static final int FAN_OUT = 4;
+
+    /**
+     * Returns the index of the parent of every node, nodes are numbered in
+     * the order they are added to their parent.
+     */
+    int[] parents(int size) {
+        int[] parents = new int[size];
+        parents[0] = -1;
+        int spine = Math.min(size, MAX_DEPTH);
+        for (int i = 1; i < size; i++) {
+            switch (this) {
+            case DEEP:
+                parents[i] = i < spine ? i - 1 : (i - spine) % spine;
+                break;
+            case WIDE:
+                parents[i] = 0;
+                break;
+            case BALANCED:
+                parents[i] = (i - 1) / FAN_OUT;
+                break;
+            }
+        }
+        return parents;
+    }
+
+    public Node<Integer> buildNodes(int size) {
+        int[] parents = parents(size);
+        @SuppressWarnings("unchecked")
+        Node<Integer>[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = new Node<Integer>(i);
+            nodes[i].setWidth(width(i));
+            if (i > 0) {
+                nodes[parents[i]].addChild(nodes[i]);
+            }
+        }
+        return nodes[0];
+    }
+
+    public NodeFigure buildFigures(int size) {
+        int[] parents = parents(size);
+        NodeFigure[] figures = new NodeFigure[size];
+        for (int i = 0; i < size; i++) {
+            figures[i] = new NodeFigure(null, "Node" + i, true);
+            figures[i].setWidth(width(i));
+            figures[i].setExpanded(true);
+            figures[i].setMaterialized(true);
+            if (i > 0) {
+                figures[parents[i]].addChild(figures[i]);
+            }
+        }
+        return figures[0];
+    }
+
+    private static int width(int i) {
+        return 40 + i * 31 % 80;
+    }
+}
@@ -0,0 +1,76 @@
+package org.eclipse.cdt.pasta.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.ViewTree;
+import org.eclipse.core.runtime.CoreException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the {@link ViewTree} of a parsed translation unit, with
+ * only the root figure and with all figures materialized as if every node had
+ * been expanded. Parsing the same source is measured for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(0)
+public class ViewTreeBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int functions;
+
+    private String source;
+    private IASTTranslationUnit ast;
+
+    @Setup
+    public void setUp() throws CoreException {
+        source = SampleSources.generate(functions);
+        ast = SampleSources.parse(source);
+    }
+
+    @Benchmark
+    public IASTTranslationUnit parse() throws CoreException {
+        return SampleSources.parse(source);
+    }
+
+    @Benchmark
+    public ViewTree construct() {
+        return new ViewTree(ast);
+    }
+
+    @Benchmark
+    public int constructAndMaterialize() {
+        ViewTree tree = new ViewTree(ast);
+        Deque<NodeFigure> pending = new ArrayDeque<>();
+        pending.push(tree.getRoot());
+        int figures = 0;
+        while (!pending.isEmpty()) {
+            NodeFigure figure = pending.pop();
+            figures++;
+            if (figure.isEnabled()) {
+                tree.materializeChildren(figure);
+                for (NodeFigure child : figure.getChildren()) {
+                    pending.push(child);
+                }
+            }
+        }
+        return figures;
+    }
+}
@@ -0,0 +1,78 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.cdt.core.model.ITranslationUnit;
+
+/**
+ * Bounded cache of parsed translation units and their view trees. An entry is
+ * only valid as long as both the modification stamp of the translation unit and
+ * the last write access of the index match the ones it was parsed with. The
+ * least recently used entry is evicted once the capacity is exceeded, and the
+ * trees are only softly referenced so they can be reclaimed under memory
+ * pressure.
+ */
+public class ASTCache {
+
+    public static final long UNKNOWN_STAMP = -1;
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private final int capacity;
+    private final Map<ITranslationUnit, CacheEntry> entries;
+
+    public ASTCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ASTCache(final int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<ITranslationUnit, CacheEntry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ITranslationUnit, CacheEntry> eldest) {
+                return size() > ASTCache.this.capacity;
+            }
+        };
+    }
+
+    public synchronized ViewTree get(ITranslationUnit translationUnit, long modificationStamp, long indexStamp) {
+        CacheEntry entry = entries.get(translationUnit);
+        if (entry == null) {
+            return null;
+        }
+        ViewTree tree = entry.tree.get();
+        if (tree == null || entry.modificationStamp != modificationStamp || entry.indexStamp != indexStamp) {
+            entries.remove(translationUnit);
+            return null;
+        }
+        return tree;
+    }
+
+    public synchronized void put(ITranslationUnit translationUnit, long modificationStamp, long indexStamp, ViewTree tree) {
+        if (modificationStamp == UNKNOWN_STAMP || indexStamp == UNKNOWN_STAMP) {
+            return;
+        }
+        entries.put(translationUnit, new CacheEntry(modificationStamp, indexStamp, tree));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static class CacheEntry {
+
+        private final long modificationStamp;
+        private final long indexStamp;
+        private final SoftReference<ViewTree> tree;
+
+        CacheEntry(long modificationStamp, long indexStamp, ViewTree tree) {
+            this.modificationStamp = modificationStamp;
+            this.indexStamp = indexStamp;
+            this.tree = new SoftReference<>(tree);
+        }
+    }
+}
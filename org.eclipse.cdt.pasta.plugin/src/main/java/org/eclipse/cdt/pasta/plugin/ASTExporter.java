@@ -0,0 +1,229 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IBinding;
+
+/**
+ * Writes an AST depth-first to an output stream without building any
+ * intermediate tree, so memory use is bounded by the depth of the AST. Every
+ * node is written with its class name, its file location and, if enabled, the
+ * binding of names. Resolving bindings may access the index, callers are
+ * expected to hold its read lock.
+ * <p>
+ * {@link Format#JSON} writes nested objects with the keys "class", "file",
+ * "offset", "length", "line", "binding" and "children". {@link Format#BINARY}
+ * starts with the magic bytes "PAST" and a version byte, followed by the root
+ * node. A node is its class name, a flags byte (1: has location, 2: has
+ * binding), the file name, offset, length and starting line if it has a
+ * location, the binding if it has one, the number of children and the
+ * children. Numbers are unsigned variable-length integers. Bindings are
+ * written as their UTF-8 length and bytes. Class and file names are written
+ * once as 0 followed by length and bytes, and later referenced by their index
+ * in order of first occurrence plus one.
+ */
+public class ASTExporter {
+
+    public enum Format {
+        JSON, BINARY
+    }
+
+    public static final int BINARY_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Format format;
+    private final boolean includeBindings;
+
+    public ASTExporter(Format format, boolean includeBindings) {
+        this.format = format;
+        this.includeBindings = includeBindings;
+    }
+
+    public void export(IASTNode root, OutputStream out) throws IOException {
+        NodeWriter writer = format == Format.JSON ? new JsonWriter(out) : new BinaryWriter(out);
+        Deque<Frame> stack = new ArrayDeque<>();
+        IASTNode[] children = root.getChildren();
+        writer.begin(root, children.length);
+        stack.push(new Frame(children));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.children.length) {
+                IASTNode child = frame.children[frame.next++];
+                IASTNode[] grandChildren = child.getChildren();
+                writer.begin(child, grandChildren.length);
+                stack.push(new Frame(grandChildren));
+            } else {
+                stack.pop();
+                writer.end();
+            }
+        }
+        writer.finish();
+    }
+
+    private String getBinding(IASTNode node) {
+        if (!includeBindings || !(node instanceof IASTName)) {
+            return null;
+        }
+        try {
+            IBinding binding = ((IASTName) node).resolveBinding();
+            return binding != null ? binding.getClass().getSimpleName() + " " + binding.getName() : null;
+        } catch (RuntimeException e) {
+            PastaPlugin.log(e);
+            return null;
+        }
+    }
+
+    private static class Frame {
+
+        private final IASTNode[] children;
+        private int next;
+
+        Frame(IASTNode[] children) {
+            this.children = children;
+        }
+    }
+
+    private abstract class NodeWriter {
+
+        abstract void begin(IASTNode node, int childCount) throws IOException;
+
+        abstract void end() throws IOException;
+
+        abstract void finish() throws IOException;
+    }
+
+    private class JsonWriter extends NodeWriter {
+
+        private final Writer writer;
+        private final Deque<Boolean> hasChildren = new ArrayDeque<>();
+        private boolean first = true;
+
+        JsonWriter(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, UTF8));
+        }
+
+        @Override
+        void begin(IASTNode node, int childCount) throws IOException {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write("{\"class\":");
+            writeString(node.getClass().getSimpleName());
+            IASTFileLocation location = node.getFileLocation();
+            if (location != null) {
+                writer.write(",\"file\":");
+                writeString(location.getFileName());
+                writer.write(",\"offset\":" + location.getNodeOffset());
+                writer.write(",\"length\":" + location.getNodeLength());
+                writer.write(",\"line\":" + location.getStartingLineNumber());
+            }
+            String binding = getBinding(node);
+            if (binding != null) {
+                writer.write(",\"binding\":");
+                writeString(binding);
+            }
+            if (childCount > 0) {
+                writer.write(",\"children\":[");
+            }
+            hasChildren.push(childCount > 0);
+            first = true;
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write(hasChildren.pop() ? "]}" : "}");
+            first = false;
+        }
+
+        @Override
+        void finish() throws IOException {
+            writer.write('\n');
+            writer.flush();
+        }
+
+        private void writeString(String value) throws IOException {
+            Json.writeString(writer, value);
+        }
+    }
+
+    private class BinaryWriter extends NodeWriter {
+
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        BinaryWriter(OutputStream stream) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeBytes("PAST");
+            out.writeByte(BINARY_VERSION);
+        }
+
+        @Override
+        void begin(IASTNode node, int childCount) throws IOException {
+            writeString(node.getClass().getSimpleName());
+            IASTFileLocation location = node.getFileLocation();
+            String binding = getBinding(node);
+            out.writeByte((location != null ? 1 : 0) | (binding != null ? 2 : 0));
+            if (location != null) {
+                writeString(location.getFileName());
+                writeNumber(location.getNodeOffset());
+                writeNumber(location.getNodeLength());
+                writeNumber(location.getStartingLineNumber());
+            }
+            if (binding != null) {
+                writeBytes(binding);
+            }
+            writeNumber(childCount);
+        }
+
+        @Override
+        void end() {
+        }
+
+        @Override
+        void finish() throws IOException {
+            out.flush();
+        }
+
+        private void writeString(String value) throws IOException {
+            String key = value != null ? value : "";
+            Integer index = strings.get(key);
+            if (index != null) {
+                writeNumber(index + 1);
+                return;
+            }
+            strings.put(key, strings.size());
+            writeNumber(0);
+            writeBytes(key);
+        }
+
+        private void writeBytes(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF8);
+            writeNumber(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeNumber(int value) throws IOException {
+            int remaining = Math.max(0, value);
+            while (remaining >= 0x80) {
+                out.writeByte((remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            out.writeByte(remaining);
+        }
+    }
+}
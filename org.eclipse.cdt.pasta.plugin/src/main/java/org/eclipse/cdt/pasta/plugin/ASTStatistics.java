@@ -0,0 +1,182 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IBinding;
+import org.eclipse.cdt.core.dom.ast.IProblemBinding;
+
+/**
+ * Structural statistics of one or more ASTs: a histogram of node types, depth
+ * and fan-out and, if bindings are resolved, a histogram of binding types and
+ * the number of problem bindings. Statistics of several translation units are
+ * combined with {@link #merge(ASTStatistics)}.
+ * <p>
+ * Nodes and bindings are counted by class. The type histograms are derived
+ * from these counts with the {@link ClassMetadata} the {@link NodeWidget}
+ * shows, so a node is also counted for every superclass and interface in its
+ * type hierarchy, e.g. for IASTExpression.
+ */
+public class ASTStatistics {
+
+    private final Map<Class<?>, Integer> nodeClasses = new HashMap<>();
+    private final Map<Class<?>, Integer> bindingClasses = new HashMap<>();
+    private int nodeCount;
+    private int innerNodeCount;
+    private int maxDepth;
+    private long depthSum;
+    private int maxFanOut;
+    private long fanOutSum;
+    private int nameCount;
+    private int problemBindingCount;
+
+    /**
+     * Adds all nodes of the AST below root. Resolving bindings may access the
+     * index, callers are expected to hold its read lock.
+     */
+    public void collect(IASTNode root, boolean resolveBindings) {
+        Deque<IASTNode> pending = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        pending.push(root);
+        depths.push(0);
+        while (!pending.isEmpty()) {
+            IASTNode node = pending.pop();
+            int depth = depths.pop();
+            IASTNode[] children = node.getChildren();
+            nodeCount++;
+            depthSum += depth;
+            maxDepth = Math.max(maxDepth, depth);
+            if (children.length > 0) {
+                innerNodeCount++;
+                fanOutSum += children.length;
+                maxFanOut = Math.max(maxFanOut, children.length);
+            }
+            increment(nodeClasses, node.getClass(), 1);
+            if (node instanceof IASTName) {
+                nameCount++;
+                if (resolveBindings) {
+                    collectBinding((IASTName) node);
+                }
+            }
+            for (int i = children.length - 1; i >= 0; i--) {
+                pending.push(children[i]);
+                depths.push(depth + 1);
+            }
+        }
+    }
+
+    private void collectBinding(IASTName name) {
+        IBinding binding = name.resolveBinding();
+        if (binding == null) {
+            return;
+        }
+        if (binding instanceof IProblemBinding) {
+            problemBindingCount++;
+        }
+        increment(bindingClasses, binding.getClass(), 1);
+    }
+
+    public void merge(ASTStatistics other) {
+        for (Map.Entry<Class<?>, Integer> entry : other.nodeClasses.entrySet()) {
+            increment(nodeClasses, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Class<?>, Integer> entry : other.bindingClasses.entrySet()) {
+            increment(bindingClasses, entry.getKey(), entry.getValue());
+        }
+        nodeCount += other.nodeCount;
+        innerNodeCount += other.innerNodeCount;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        depthSum += other.depthSum;
+        maxFanOut = Math.max(maxFanOut, other.maxFanOut);
+        fanOutSum += other.fanOutSum;
+        nameCount += other.nameCount;
+        problemBindingCount += other.problemBindingCount;
+    }
+
+    private static <K> void increment(Map<K, Integer> histogram, K key, int count) {
+        Integer current = histogram.get(key);
+        histogram.put(key, current != null ? current + count : count);
+    }
+
+    /**
+     * Returns the number of nodes by simple class name.
+     */
+    public Map<String, Integer> getNodeTypes() {
+        return byName(nodeClasses);
+    }
+
+    /**
+     * Returns the number of nodes by the simple names of all types in their
+     * type hierarchy.
+     */
+    public Map<String, Integer> getNodeHierarchyTypes() {
+        return byHierarchy(nodeClasses);
+    }
+
+    public Map<String, Integer> getBindingTypes() {
+        return byName(bindingClasses);
+    }
+
+    public Map<String, Integer> getBindingHierarchyTypes() {
+        return byHierarchy(bindingClasses);
+    }
+
+    private static Map<String, Integer> byName(Map<Class<?>, Integer> classes) {
+        Map<String, Integer> histogram = new TreeMap<>();
+        for (Map.Entry<Class<?>, Integer> entry : classes.entrySet()) {
+            increment(histogram, entry.getKey().getSimpleName(), entry.getValue());
+        }
+        return histogram;
+    }
+
+    private static Map<String, Integer> byHierarchy(Map<Class<?>, Integer> classes) {
+        Map<String, Integer> histogram = new TreeMap<>();
+        for (Map.Entry<Class<?>, Integer> entry : classes.entrySet()) {
+            Set<String> types = new HashSet<>();
+            for (ClassMetadata.HierarchyEntry type : ClassMetadata.of(entry.getKey()).getTypeHierarchy()) {
+                if (types.add(type.getName())) {
+                    increment(histogram, type.getName(), entry.getValue());
+                }
+            }
+        }
+        return histogram;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public double getMeanDepth() {
+        return nodeCount > 0 ? (double) depthSum / nodeCount : 0;
+    }
+
+    public int getMaxFanOut() {
+        return maxFanOut;
+    }
+
+    /**
+     * Returns the mean number of children of nodes that have children.
+     */
+    public double getMeanFanOut() {
+        return innerNodeCount > 0 ? (double) fanOutSum / innerNodeCount : 0;
+    }
+
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    public int getProblemBindingCount() {
+        return problemBindingCount;
+    }
+}
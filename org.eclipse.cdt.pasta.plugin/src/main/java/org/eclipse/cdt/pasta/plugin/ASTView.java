@@ -1,72 +1,494 @@
 package org.eclipse.cdt.pasta.plugin;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.ast.IASTNode;
-import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
-import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ElementChangedEvent;
+import org.eclipse.cdt.core.model.IElementChangedListener;
 import org.eclipse.cdt.core.model.ITranslationUnit;
-import org.eclipse.cdt.core.model.IWorkingCopy;
 import org.eclipse.cdt.ui.CUIPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.action.MenuManager;
+import org.eclipse.jface.action.Separator;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.ui.IEditorInput;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.ISelectionListener;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.part.ViewPart;
-import org.osgi.framework.BundleContext;
+import org.eclipse.ui.progress.IWorkbenchSiteProgressService;
+import org.eclipse.ui.texteditor.ITextEditor;
 import org.osgi.framework.FrameworkUtil;
-import org.osgi.framework.ServiceReference;
-import org.osgi.service.event.Event;
-import org.osgi.service.event.EventAdmin;
+import org.osgi.util.tracker.ServiceTracker;
 
 public class ASTView extends ViewPart {
 
+    private static final int SEARCH_DELAY = 200;
+    private static final int LIVE_UPDATE_DELAY = 500;
+    private static final int[] MAX_DEPTHS = { ViewTree.Options.UNLIMITED_DEPTH, 4, 8, 16, 32 };
+    private static final int OVERVIEW_WIDTH = 120;
+
+    private ASTWidget treeView;
+    private TreeOverview overview;
+    private Text searchText;
+    private Combo searchMode;
+    private Button filterButton;
+    private Label matchCount;
+    private final Runnable search = new Runnable() {
+
+        @Override
+        public void run() {
+            search();
+        }
+    };
+    private ParseASTJob parseJob;
+    private ViewTree.Options treeOptions = ViewTree.Options.DEFAULT;
+    private final ASTCache cache = new ASTCache();
+    private NodeSelectionChannel selectionChannel;
+    private final ViewMetrics metrics = new ViewMetrics();
+    private ServiceTracker<MetricsListener, MetricsListener> metricsServices;
+    private Display display;
+    private Label statsLine;
+    private boolean logMetrics;
+    private final AtomicBoolean statsPending = new AtomicBoolean();
+    private final Runnable updateStats = new Runnable() {
+
+        @Override
+        public void run() {
+            statsPending.set(false);
+            if (!statsLine.isDisposed() && statsLine.getVisible()) {
+                statsLine.setText(metrics.format());
+            }
+        }
+    };
+    private final MetricsListener metricsListener = new MetricsListener() {
+
+        @Override
+        public void phaseFinished(ViewMetrics metrics, ViewMetrics.Phase phase, long nanos, long allocatedBytes) {
+            if (statsPending.compareAndSet(false, true) && !display.isDisposed()) {
+                display.asyncExec(updateStats);
+            }
+            for (MetricsListener service : metricsServices.getServices(new MetricsListener[0])) {
+                service.phaseFinished(metrics, phase, nanos, allocatedBytes);
+            }
+        }
+
+        @Override
+        public void treeShown(ViewMetrics metrics) {
+            if (logMetrics) {
+                PastaPlugin.logInfo("AST view: " + metrics.format());
+            }
+            for (MetricsListener service : metricsServices.getServices(new MetricsListener[0])) {
+                service.treeShown(metrics);
+            }
+        }
+    };
+    private final Runnable liveUpdate = new Runnable() {
+
+        @Override
+        public void run() {
+            if (!treeView.isDisposed()) {
+                refresh(true);
+            }
+        }
+    };
+    private boolean live;
+    private final IElementChangedListener reconcileListener = new IElementChangedListener() {
+
+        @Override
+        public void elementChanged(ElementChangedEvent event) {
+            if (event.getType() != ElementChangedEvent.POST_RECONCILE || !(event.getDelta().getElement() instanceof ITranslationUnit)) {
+                return;
+            }
+            final ITranslationUnit translationUnit = (ITranslationUnit) event.getDelta().getElement();
+            if (!display.isDisposed()) {
+                display.asyncExec(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (live && !treeView.isDisposed() && treeView.isShowing(translationUnit)) {
+                            display.timerExec(LIVE_UPDATE_DELAY, liveUpdate);
+                        }
+                    }
+                });
+            }
+        }
+    };
+    private final ISelectionListener editorSelectionListener = new ISelectionListener() {
+
+        @Override
+        public void selectionChanged(IWorkbenchPart part, ISelection selection) {
+            if (part instanceof IEditorPart && selection instanceof ITextSelection) {
+                revealSelection((IEditorPart) part, (ITextSelection) selection);
+            }
+        }
+    };
+
     @Override
     public void createPartControl(final Composite parent) {
-        final ASTWidget treeView = new ASTWidget(parent);
+        GridLayout layout = new GridLayout(1, false);
+        layout.marginWidth = 0;
+        layout.marginHeight = 0;
+        parent.setLayout(layout);
+        display = parent.getDisplay();
+        createSearchBar(parent);
+        createTreeArea(parent);
+        createStatsLine(parent);
+        metricsServices = new ServiceTracker<>(FrameworkUtil.getBundle(ASTView.class).getBundleContext(), MetricsListener.class, null);
+        metricsServices.open();
+        metrics.addListener(metricsListener);
+        treeView.setMetrics(metrics);
         getViewSite().getActionBars().getToolBarManager().add(new Action() {
             @Override
             public void run() {
-                treeView.drawAST(getAST()); 
+                refresh();
             }
         });
-        treeView.drawAST(getAST());
+        Action syncOnHover = new Action("Sync on Hover", IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                treeView.setSyncOnHover(isChecked());
+            }
+        };
+        syncOnHover.setToolTipText("Select nodes in the editor on hover instead of on click");
+        syncOnHover.setChecked(true);
+        getViewSite().getActionBars().getToolBarManager().add(syncOnHover);
+        Action liveAction = new Action("Live Update", IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                setLive(isChecked());
+            }
+        };
+        liveAction.setToolTipText("Update the tree while the editor is being edited");
+        getViewSite().getActionBars().getToolBarManager().add(liveAction);
+        Action showMetrics = new Action("Show Metrics", IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                showStatsLine(isChecked());
+            }
+        };
+        Action logMetricsAction = new Action("Log Metrics", IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                logMetrics = isChecked();
+            }
+        };
+        logMetricsAction.setToolTipText("Write the metrics of every shown tree to the error log");
+        Action compactAction = new Action("Compact Tree", IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                setTreeOptions(new ViewTree.Options(isChecked(), treeOptions.getMaxDepth()));
+            }
+        };
+        compactAction.setToolTipText("Merge chains of single children and show leaf signatures inline");
+        MenuManager depthMenu = new MenuManager("Maximum Depth");
+        for (final int maxDepth : MAX_DEPTHS) {
+            Action depthAction = new Action(maxDepth == ViewTree.Options.UNLIMITED_DEPTH ? "Unlimited" : String.valueOf(maxDepth), IAction.AS_RADIO_BUTTON) {
+                @Override
+                public void run() {
+                    if (isChecked()) {
+                        setTreeOptions(new ViewTree.Options(treeOptions.isCompact(), maxDepth));
+                    }
+                }
+            };
+            depthAction.setChecked(maxDepth == treeOptions.getMaxDepth());
+            depthMenu.add(depthAction);
+        }
+        Action overviewAction = new Action("Show Overview", IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                showOverview(isChecked());
+            }
+        };
+        overviewAction.setToolTipText("Show the whole tree next to it and jump to a position by clicking");
+        Action zoomIn = new Action("Zoom In") {
+            @Override
+            public void run() {
+                treeView.zoomIn();
+            }
+        };
+        Action zoomOut = new Action("Zoom Out") {
+            @Override
+            public void run() {
+                treeView.zoomOut();
+            }
+        };
+        zoomOut.setToolTipText("Zoom out, below half size nodes are drawn without labels");
+        Action resetZoom = new Action("Reset Zoom") {
+            @Override
+            public void run() {
+                treeView.setZoom(1f);
+            }
+        };
+        getViewSite().getActionBars().getMenuManager().add(compactAction);
+        getViewSite().getActionBars().getMenuManager().add(depthMenu);
+        getViewSite().getActionBars().getMenuManager().add(new Separator());
+        getViewSite().getActionBars().getMenuManager().add(overviewAction);
+        getViewSite().getActionBars().getMenuManager().add(zoomIn);
+        getViewSite().getActionBars().getMenuManager().add(zoomOut);
+        getViewSite().getActionBars().getMenuManager().add(resetZoom);
+        getViewSite().getActionBars().getMenuManager().add(new Separator());
+        getViewSite().getActionBars().getMenuManager().add(showMetrics);
+        getViewSite().getActionBars().getMenuManager().add(logMetricsAction);
+        refresh();
+        getSite().getPage().addPostSelectionListener(editorSelectionListener);
+        selectionChannel = new NodeSelectionChannel();
         treeView.setListener(new NodeSelectionListener() {
             
             @Override
             public void nodeSelected(IASTNode node) {
-                Map<String, Object> map = new HashMap<>();
-                map.put("ASTNODE", node);
-                doPostEvent("ASTNODE", map);
+                selectionChannel.publish(node);
+            }
+        });
+    }
+
+    private void createSearchBar(Composite parent) {
+        Composite bar = new Composite(parent, SWT.NONE);
+        bar.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        bar.setLayout(new GridLayout(4, false));
+        searchMode = new Combo(bar, SWT.READ_ONLY);
+        for (SearchIndex.Mode mode : SearchIndex.Mode.values()) {
+            searchMode.add(mode.getLabel());
+        }
+        searchMode.select(0);
+        searchText = new Text(bar, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+        searchText.setMessage("Find nodes by type, name or signature");
+        searchText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        filterButton = new Button(bar, SWT.CHECK);
+        filterButton.setText("Filter");
+        filterButton.setToolTipText("Show only matching subtrees");
+        matchCount = new Label(bar, SWT.NONE);
+        matchCount.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, false, false));
+        searchText.addModifyListener(new ModifyListener() {
+
+            @Override
+            public void modifyText(ModifyEvent e) {
+                searchText.getDisplay().timerExec(SEARCH_DELAY, search);
             }
         });
+        SelectionAdapter searchNow = new SelectionAdapter() {
+
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                search();
+            }
+
+            @Override
+            public void widgetDefaultSelected(SelectionEvent e) {
+                search();
+            }
+        };
+        searchText.addSelectionListener(searchNow);
+        searchMode.addSelectionListener(searchNow);
+        filterButton.addSelectionListener(searchNow);
+    }
+
+    /**
+     * Creates the tree and its overview on the right, which is hidden until
+     * enabled from the view menu.
+     */
+    private void createTreeArea(Composite parent) {
+        Composite area = new Composite(parent, SWT.NONE);
+        area.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        GridLayout layout = new GridLayout(2, false);
+        layout.marginWidth = 0;
+        layout.marginHeight = 0;
+        area.setLayout(layout);
+        treeView = new ASTWidget(area);
+        treeView.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        overview = new TreeOverview(area, treeView);
+        GridData data = new GridData(SWT.FILL, SWT.FILL, false, true);
+        data.widthHint = OVERVIEW_WIDTH;
+        data.exclude = true;
+        overview.setLayoutData(data);
+        overview.setVisible(false);
+    }
+
+    private void showOverview(boolean show) {
+        ((GridData) overview.getLayoutData()).exclude = !show;
+        overview.setVisible(show);
+        overview.getParent().layout();
+    }
+
+    /**
+     * Creates the line below the tree that shows the {@link ViewMetrics},
+     * hidden until enabled from the view menu.
+     */
+    private void createStatsLine(Composite parent) {
+        statsLine = new Label(parent, SWT.NONE);
+        GridData data = new GridData(SWT.FILL, SWT.CENTER, true, false);
+        data.exclude = true;
+        statsLine.setLayoutData(data);
+        statsLine.setVisible(false);
+    }
+
+    private void showStatsLine(boolean show) {
+        ((GridData) statsLine.getLayoutData()).exclude = !show;
+        statsLine.setVisible(show);
+        statsLine.setText(metrics.format());
+        statsLine.getParent().layout();
+    }
+
+    private void search() {
+        if (searchText.isDisposed()) {
+            return;
+        }
+        searchText.getDisplay().timerExec(-1, search);
+        String query = searchText.getText().trim();
+        if (query.isEmpty()) {
+            treeView.clearSearch();
+            matchCount.setText("");
+        } else {
+            int count = treeView.search(SearchIndex.Mode.values()[searchMode.getSelectionIndex()], query, filterButton.getSelection());
+            matchCount.setText(count == 1 ? "1 match" : count + " matches");
+        }
+        matchCount.getParent().layout();
+    }
+
+    /**
+     * Reparses the translation unit of the active editor after every
+     * reconcile of the editor if true, at most once per LIVE_UPDATE_DELAY,
+     * and patches the displayed tree.
+     */
+    private void setLive(boolean live) {
+        if (live == this.live) {
+            return;
+        }
+        this.live = live;
+        if (live) {
+            CoreModel.getDefault().addElementChangedListener(reconcileListener);
+        } else {
+            CoreModel.getDefault().removeElementChangedListener(reconcileListener);
+            display.timerExec(-1, liveUpdate);
+        }
+    }
+
+    /**
+     * Redraws the tree of the active editor with new options. Cached trees
+     * were built with the old options and are dropped.
+     */
+    private void setTreeOptions(ViewTree.Options treeOptions) {
+        this.treeOptions = treeOptions;
+        cache.clear();
+        refresh();
+    }
+
+    private void refresh() {
+        refresh(false);
+    }
+
+    /**
+     * Shows the tree of the translation unit of the active editor. If patch
+     * is true, the displayed tree is updated in place instead of redrawn.
+     */
+    private void refresh(boolean patch) {
+        if (parseJob != null) {
+            parseJob.cancel();
+        }
+        IEditorPart editor = getActiveEditor();
+        ITranslationUnit translationUnit = getTranslationUnit(editor);
+        if (translationUnit == null) {
+            treeView.showMessage("No C/C++ editor is active");
+            return;
+        }
+        long modificationStamp = getModificationStamp(editor);
+        ViewTree cached = cache.get(translationUnit, modificationStamp, getIndexStamp(translationUnit));
+        if (cached != null) {
+            if (patch) {
+                treeView.patchTree(cached);
+            } else {
+                treeView.drawTree(cached);
+            }
+            return;
+        }
+        if (!patch) {
+            treeView.showMessage("Parsing " + translationUnit.getElementName() + "...");
+        }
+        parseJob = new ParseASTJob(translationUnit, modificationStamp, cache, treeView, treeOptions, metrics, patch);
+        IWorkbenchSiteProgressService progressService = (IWorkbenchSiteProgressService) getSite().getService(IWorkbenchSiteProgressService.class);
+        progressService.schedule(parseJob);
+    }
+
+    private void revealSelection(IEditorPart editor, ITextSelection selection) {
+        if (treeView.isOwnSelection(selection)) {
+            return;
+        }
+        ITranslationUnit translationUnit = getTranslationUnit(editor);
+        if (translationUnit != null && treeView.isShowing(translationUnit)) {
+            treeView.revealOffset(selection.getOffset());
+        }
     }
 
-    private IASTTranslationUnit getAST() {
+    private IEditorPart getActiveEditor() {
+        IWorkbenchPage page = CUIPlugin.getActivePage();
+        return page != null ? page.getActiveEditor() : null;
+    }
+
+    private ITranslationUnit getTranslationUnit(IEditorPart editor) {
+        if (editor == null) {
+            return null;
+        }
+        return CUIPlugin.getDefault().getWorkingCopyManager().getWorkingCopy(editor.getEditorInput());
+    }
+
+    private long getModificationStamp(IEditorPart editor) {
+        if (editor instanceof ITextEditor) {
+            ITextEditor textEditor = (ITextEditor) editor;
+            IDocument document = textEditor.getDocumentProvider().getDocument(textEditor.getEditorInput());
+            if (document instanceof IDocumentExtension4) {
+                return ((IDocumentExtension4) document).getModificationStamp();
+            }
+        }
+        return ASTCache.UNKNOWN_STAMP;
+    }
+
+    private long getIndexStamp(ITranslationUnit translationUnit) {
         try {
-            IEditorInput editorInput = CUIPlugin.getActivePage().getActiveEditor().getEditorInput();
-            IWorkingCopy workingCopy = CUIPlugin.getDefault().getWorkingCopyManager().getWorkingCopy(editorInput);
-            IIndex index;
-            index = CCorePlugin.getIndexManager().getIndex(workingCopy.getCProject());
-            return workingCopy.getAST(index, ITranslationUnit.AST_SKIP_INDEXED_HEADERS);
+            return CCorePlugin.getIndexManager().getIndex(translationUnit.getCProject()).getLastWriteAccess();
         } catch (CoreException e) {
-            throw new RuntimeException(e);
+            PastaPlugin.log(e);
+            return ASTCache.UNKNOWN_STAMP;
         }
     }
 
-    private void doPostEvent (String topic, Map<String, Object> map) {
-        Event event = new Event (topic, map);
-        BundleContext ctx = FrameworkUtil.getBundle(ASTView.class).getBundleContext();
-        ServiceReference ref = ctx.getServiceReference(EventAdmin.class.getName());
-        if( ref != null){
-            EventAdmin admin = (EventAdmin) ctx.getService(ref);
-            admin.sendEvent(event);
-            ctx.ungetService(ref);
+    @Override
+    public void dispose() {
+        getSite().getPage().removePostSelectionListener(editorSelectionListener);
+        setLive(false);
+        if (parseJob != null) {
+            parseJob.cancel();
+        }
+        cache.clear();
+        if (selectionChannel != null) {
+            selectionChannel.close();
         }
-      }
-    
+        metrics.removeListener(metricsListener);
+        if (metricsServices != null) {
+            metricsServices.close();
+        }
+        super.dispose();
+    }
+
     @Override
     public void setFocus() { }
 }
\ No newline at end of file
@@ -1,35 +1,117 @@
 package org.eclipse.cdt.pasta.plugin;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
 import org.eclipse.cdt.core.dom.ast.IASTNode;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.model.ITranslationUnit;
 import org.eclipse.cdt.ui.CUIPlugin;
+import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.text.TextSelection;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.ScrolledComposite;
+import org.eclipse.swt.events.ControlAdapter;
+import org.eclipse.swt.events.ControlEvent;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseMoveListener;
+import org.eclipse.swt.events.MouseTrackAdapter;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
-import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.GC;
-import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.swt.widgets.Control;
-
-import ch.jbaum.lib.Node;
-import ch.jbaum.lib.NodeVisitor;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IWorkbenchPage;
 
 public class ASTWidget extends ScrolledComposite {
 
+    private static final int NODE_HEIGHT = 20;
+    private static final int NODE_PADDING = 12;
+    private static final int EDITOR_SYNC_DELAY = 150;
+    private static final int MAX_REVEALED_MATCHES = 500;
+    private static final float MIN_ZOOM = 0.05f;
+    private static final float ZOOM_STEP = 1.25f;
+    private static final float DETAIL_ZOOM = 0.5f;
+    private static final int TILE_SIZE = 256;
+    private static final int MAX_TILE_BYTES = 64 * 1024 * 1024;
+    private static final int EDGE_MARGIN = 10;
+
     private Canvas canvas;
-    private Node<Button> root;
+    private ResourcePool resources;
+    private Font font;
+    private TextWidths textWidths;
+    private final Map<TreeDiff.Change, Color> changeColors = new EnumMap<>(TreeDiff.Change.class);
+    private ViewTree tree;
+    private NodeFigure root;
+    private String message;
+    private NodeFigure hovered;
+    private NodeFigure selected;
+    private TextSelection editorSelection;
+    private NodeFigure pendingEditorSync;
+    private boolean syncOnHover = true;
+    private final Runnable editorSync = new Runnable() {
+
+        @Override
+        public void run() {
+            if (pendingEditorSync != null && !isDisposed()) {
+                selectInEditor(pendingEditorSync);
+            }
+            pendingEditorSync = null;
+        }
+    };
     private int treeHeight;
     private int treeWidth;
-    private final int NODE_HEIGHT = 20;
+    private int originX;
+    private float zoom = 1f;
+    private final TileCache<Image> tiles = new TileCache<>(TILE_SIZE, MAX_TILE_BYTES / (TILE_SIZE * TILE_SIZE * 4), new TileCache.Disposer<Image>() {
+
+        @Override
+        public void dispose(Image tile) {
+            tile.dispose();
+        }
+    });
+    private Map<NodeFigure, Rectangle> paintedRegions = new HashMap<>();
+    private final List<ViewportListener> viewportListeners = new ArrayList<>();
+    private final Set<NodeFigure> matches = new HashSet<>();
+    private final List<NodeFigure> filtered = new ArrayList<>();
+    private final TreeLayout layout = new TreeLayout(1f, 20f, 60, NODE_HEIGHT);
+    private final SpatialIndex index = new SpatialIndex(256, 60);
+    private final Set<NodeFigure> layoutRequests = new LinkedHashSet<>();
+    private boolean fullLayoutRequested;
+    private TreeLayoutJob layoutJob;
+    private boolean layoutStale;
+    private final List<Runnable> pendingCallbacks = new ArrayList<>();
+    private List<Runnable> runningCallbacks = new ArrayList<>();
     private NodeSelectionListener listener;
+    private SearchIndex.Mode searchMode;
+    private String searchQuery;
+    private boolean searchFilter;
+    private ViewMetrics metrics = new ViewMetrics();
 
     public ASTWidget(Composite parent) {
         super(parent, SWT.V_SCROLL | SWT.H_SCROLL | SWT.MULTI);
@@ -39,6 +121,13 @@ public class ASTWidget extends ScrolledComposite {
     private void init() {
         this.setBackground(this.getDisplay().getSystemColor(SWT.COLOR_WHITE));
         canvas = new Canvas(this, SWT.NO_BACKGROUND);
+        resources = ResourcePool.acquire(getDisplay());
+        font = resources.getFont(SWT.NORMAL);
+        textWidths = resources.getTextWidths(SWT.NORMAL);
+        changeColors.put(TreeDiff.Change.INSERTED, resources.getColor(new RGB(200, 240, 200)));
+        changeColors.put(TreeDiff.Change.DELETED, resources.getColor(new RGB(245, 200, 200)));
+        changeColors.put(TreeDiff.Change.MOVED, resources.getColor(new RGB(200, 220, 250)));
+        changeColors.put(TreeDiff.Change.UPDATED, resources.getColor(new RGB(250, 235, 180)));
 
         this.setContent(canvas);
         this.setExpandHorizontal(true);
@@ -48,159 +137,882 @@ public class ASTWidget extends ScrolledComposite {
 
             @Override
             public void paintControl(final PaintEvent e) {
-                ASTWidget.this.setMinWidth(treeWidth);
-                ASTWidget.this.setMinHeight(treeHeight);
                 if (root != null) {
-                    root.visit(new NodeVisitor<Button>() {
-                        @Override
-                        public void visit(Node<Button> node) {
-                            if (node.data().isVisible()) {
-                                if (node.parent() != null) {
-                                    drawLineToParent(e, node);
-                                }
-                            }
-                        }
-                    });
+                    paintTiles(e.gc, new Rectangle(e.x, e.y, e.width, e.height));
+                    return;
+                }
+                e.gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+                e.gc.fillRectangle(e.x, e.y, e.width, e.height);
+                e.gc.setFont(font);
+                if (message != null) {
+                    e.gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_DARK_GRAY));
+                    e.gc.drawText(message, 5, 5, true);
                 }
             }
         });
+        canvas.addMouseListener(new MouseAdapter() {
+
+            @Override
+            public void mouseDown(MouseEvent e) {
+                NodeFigure figure = findFigureAt(e.x, e.y);
+                if (figure != null && figure.isEnabled()) {
+                    if (!syncOnHover) {
+                        selectInEditor(figure);
+                    }
+                    if (listener != null) {
+                        listener.nodeSelected(figure.getASTNode());
+                    }
+                    toggle(figure);
+                }
+            }
+        });
+        canvas.addMouseMoveListener(new MouseMoveListener() {
+
+            @Override
+            public void mouseMove(MouseEvent e) {
+                NodeFigure figure = findFigureAt(e.x, e.y);
+                if (figure != null && !figure.isEnabled()) {
+                    figure = null;
+                }
+                if (figure == hovered) {
+                    return;
+                }
+                setHovered(figure);
+                if (syncOnHover && figure != null) {
+                    pendingEditorSync = figure;
+                    getDisplay().timerExec(EDITOR_SYNC_DELAY, editorSync);
+                }
+            }
+        });
+        canvas.addListener(SWT.MouseWheel, new Listener() {
+
+            @Override
+            public void handleEvent(Event e) {
+                if ((e.stateMask & SWT.MOD1) != 0 && e.count != 0) {
+                    if (e.count > 0) {
+                        zoomIn();
+                    } else {
+                        zoomOut();
+                    }
+                    e.doit = false;
+                }
+            }
+        });
+        canvas.addControlListener(new ControlAdapter() {
+
+            @Override
+            public void controlMoved(ControlEvent e) {
+                fireViewportChanged();
+            }
+        });
+        addControlListener(new ControlAdapter() {
+
+            @Override
+            public void controlResized(ControlEvent e) {
+                fireViewportChanged();
+            }
+        });
+        canvas.addMouseTrackListener(new MouseTrackAdapter() {
+
+            @Override
+            public void mouseExit(MouseEvent e) {
+                setHovered(null);
+                cancelEditorSync();
+            }
+        });
+        canvas.addDisposeListener(new DisposeListener() {
+
+            @Override
+            public void widgetDisposed(DisposeEvent e) {
+                cancelEditorSync();
+                tiles.clear();
+                resources.release();
+            }
+        });
     }
 
     public void drawAST(IASTTranslationUnit ast) {
+        drawTree(new ViewTree(ast));
+    }
+
+    /**
+     * Shows a newer version of the displayed tree. The figures of unchanged
+     * subtrees are kept together with their expansion state and layout, see
+     * {@link ViewTree#adopt(ViewTree)}, and the view stays scrolled to the
+     * same place. Matches of the last search are highlighted again. A tree of
+     * another file is drawn from scratch.
+     */
+    public void patchTree(ViewTree newTree) {
+        if (newTree == tree) {
+            return;
+        }
+        if (tree == null || !tree.getAST().getFilePath().equals(newTree.getAST().getFilePath())) {
+            drawTree(newTree);
+            return;
+        }
+        resetSearch();
+        newTree.takeLayoutTree();
+        NodeFigure previousRoot = root;
+        List<NodeFigure> changed = newTree.adopt(tree);
+        tree = newTree;
+        root = newTree.getRoot();
+        if (hovered != null && !hovered.isAttachedTo(root)) {
+            hovered = null;
+        }
+        if (selected != null && !selected.isAttachedTo(root)) {
+            selected = null;
+        }
+        if (pendingEditorSync != null && !pendingEditorSync.isAttachedTo(root)) {
+            cancelEditorSync();
+        }
+        final int previousOriginX = originX;
+        final Point origin = getOrigin();
+        if (searchQuery != null || root != previousRoot) {
+            if (searchQuery != null) {
+                markMatches(tree.getSearchIndex().find(searchMode, searchQuery));
+            }
+            requestFullLayout();
+        } else {
+            requestLayout(changed);
+        }
+        metrics.setNodeCount(tree.getOffsetIndex().size());
+        afterLayout(new Runnable() {
+
+            @Override
+            public void run() {
+                setOrigin(origin.x + Math.round((originX - previousOriginX) * zoom), origin.y);
+                metrics.treeShown();
+            }
+        });
+    }
+
+    /**
+     * Measures and lays out the visible figures of a tree that is not
+     * displayed yet on a {@link CompactTree}, so that
+     * {@link #drawTree(ViewTree)} only has to index and paint them. May be
+     * called from any thread.
+     */
+    public void prepareTree(ViewTree tree) {
+        ViewMetrics.Timer timer = metrics.start(ViewMetrics.Phase.MEASURE);
+        CompactTree compact = new CompactTree(tree.getRoot());
+        compact.measure(textWidths, NODE_PADDING);
+        timer.stop();
+        timer = metrics.start(ViewMetrics.Phase.LAYOUT);
+        layout.layout(compact);
+        timer.stop();
+        tree.setLayoutTree(compact);
+    }
+
+    /**
+     * Shows a tree from scratch. Unless the tree has been prepared, its
+     * visible figures are measured and laid out in the background and the
+     * tree appears once they are placed.
+     */
+    public void drawTree(ViewTree tree) {
         clear();
-        root = constructTree(ast, canvas);
-        root.adjust(1f, 20f);
-        updateNodePositions(root);
-        root.data().setVisible(true);
-        canvas.redraw();
-        canvas.update();
+        this.tree = tree;
+        root = tree.getRoot();
+        metrics.setNodeCount(tree.getOffsetIndex().size());
+        CompactTree prepared = tree.takeLayoutTree();
+        if (prepared != null) {
+            layout.setModel(prepared);
+            layoutChanged();
+            refresh();
+            metrics.treeShown();
+            return;
+        }
+        requestFullLayout();
+        afterLayout(new Runnable() {
+
+            @Override
+            public void run() {
+                metrics.treeShown();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Replaces the displayed tree with a plain text message, e.g. while a
+     * translation unit is being parsed.
+     */
+    public void showMessage(String message) {
+        clear();
+        this.message = message;
+        refresh();
+    }
+
+    /**
+     * Returns whether the widget currently shows the AST of the given
+     * translation unit.
+     */
+    public boolean isShowing(ITranslationUnit translationUnit) {
+        if (tree == null) {
+            return false;
+        }
+        ITranslationUnit shown = tree.getAST().getOriginatingTranslationUnit();
+        return shown != null && shown.getPath().equals(translationUnit.getPath());
+    }
+
+    /**
+     * Returns whether the selection was set in the editor by hovering over a
+     * figure of this widget.
+     */
+    public boolean isOwnSelection(ITextSelection selection) {
+        return editorSelection != null && editorSelection.getOffset() == selection.getOffset() && editorSelection.getLength() == selection.getLength();
+    }
+
+    /**
+     * Expands, highlights and scrolls to the innermost AST node containing the
+     * offset.
+     */
+    public void revealOffset(int offset) {
+        if (tree == null) {
+            return;
+        }
+        IASTNode astNode = tree.getOffsetIndex().findInnermost(offset);
+        if (astNode == null) {
+            return;
+        }
+        final NodeFigure figure = tree.reveal(astNode);
+        redrawFigure(selected);
+        selected = figure;
+        requestLayout(Collections.singletonList(figure));
+        afterLayout(new Runnable() {
+
+            @Override
+            public void run() {
+                if (figure == selected && figure.isAttachedTo(root)) {
+                    redrawFigure(figure);
+                    showFigure(figure);
+                }
+            }
+        });
+    }
+
+    /**
+     * Expands the paths to the nodes matching the query and highlights them.
+     * At most MAX_REVEALED_MATCHES nodes are revealed. If filter is true, only
+     * the matching subtrees and their ancestors are shown. Returns the total
+     * number of matching nodes.
+     */
+    public int search(SearchIndex.Mode mode, String query, boolean filter) {
+        if (tree == null) {
+            return 0;
+        }
+        searchMode = mode;
+        searchQuery = query;
+        searchFilter = filter;
+        List<IASTNode> found = tree.getSearchIndex().find(mode, query);
+        final NodeFigure first = markMatches(found);
+        requestFullLayout();
+        if (first != null) {
+            afterLayout(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (first.isAttachedTo(root)) {
+                        showFigure(first);
+                    }
+                }
+            });
+        }
+        return found.size();
+    }
+
+    /**
+     * Removes the highlighting and filtering of the last search.
+     */
+    public void clearSearch() {
+        if (tree == null) {
+            return;
+        }
+        searchQuery = null;
+        resetSearch();
+        requestFullLayout();
+    }
+
+    /**
+     * Selects the source range of a node in the editor when the mouse rests on
+     * its figure if true, or only when the figure is clicked otherwise.
+     */
+    public void setSyncOnHover(boolean syncOnHover) {
+        this.syncOnHover = syncOnHover;
+        if (!syncOnHover) {
+            cancelEditorSync();
+        }
     }
-    
+
     public void setListener(NodeSelectionListener listener) {
         this.listener = listener;
     }
 
-    private void clear() {
-        for (Control child : canvas.getChildren()) {
-            child.dispose();
+    public void addViewportListener(ViewportListener listener) {
+        viewportListeners.add(listener);
+    }
+
+    public void removeViewportListener(ViewportListener listener) {
+        viewportListeners.remove(listener);
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Enlarges the tree by one zoom step, as far as zoom 1.
+     */
+    public void zoomIn() {
+        setZoom(zoom * ZOOM_STEP);
+    }
+
+    /**
+     * Shrinks the tree by one zoom step, as far as the minimum zoom.
+     */
+    public void zoomOut() {
+        setZoom(zoom / ZOOM_STEP);
+    }
+
+    /**
+     * Scales the tree by zoom, at most 1, keeping the center of the visible
+     * area in place. Below DETAIL_ZOOM figures are drawn as plain boxes
+     * without text and the edges to the children of a figure are drawn as
+     * one bus.
+     */
+    public void setZoom(float zoom) {
+        float newZoom = Math.max(MIN_ZOOM, Math.min(1f, zoom));
+        if (newZoom == this.zoom) {
+            return;
         }
+        Rectangle viewport = getViewport();
+        this.zoom = newZoom;
+        tiles.clear();
+        refresh();
+        scrollTo(viewport.x + viewport.width / 2, viewport.y + viewport.height / 2);
+        fireViewportChanged();
     }
 
-    private void drawLineToParent(PaintEvent e, Node<?> node) {
-        int parentX = (int) (getXCoord(node.parent()) + ((node.parent().width()) / 2));
-        int parentY = getYCoord(node.parent()) + NODE_HEIGHT;
-        int nodeX = (int) (getXCoord(node) + ((node.width()) / 2));
-        int nodeY = getYCoord(node);
-        e.gc.drawLine(nodeX, nodeY, parentX, parentY);
-        drawArrowHead(e.gc, nodeX, nodeY, parentX, parentY);
+    /**
+     * Returns the size of the laid out tree at zoom 1.
+     */
+    public Rectangle getTreeBounds() {
+        return new Rectangle(0, 0, treeWidth, treeHeight);
     }
-    
-    private void drawArrowHead(GC gc, double tipX, double tipY, double tailX, double tailY)  
-    {  
-        double phi = Math.toRadians(20);  
-        int barb = 10;  
-        double dy = tipY - tailY;  
-        double dx = tipX - tailX;  
-        double theta = Math.atan2(dy, dx);   
-        double x, y, rho = theta + phi;  
-        for(int j = 0; j < 2; j++)  
-        {  
-            x = tipX - barb * Math.cos(rho);  
-            y = tipY - barb * Math.sin(rho);  
-            gc.drawLine((int)tipX, (int)tipY,(int) x,(int) y);  
-            rho = theta - phi;  
-        }  
-    }  
 
-    private void updateNodePositions(final Node<Button> node) {
-        if (node.parent() != null && !node.parent().data().isVisible()) {
-            node.data().setVisible(false);
+    /**
+     * Returns the visible part of the tree in the coordinates of
+     * {@link #getTreeBounds()}.
+     */
+    public Rectangle getViewport() {
+        Point origin = getOrigin();
+        Rectangle client = getClientArea();
+        return new Rectangle((int) (origin.x / zoom), (int) (origin.y / zoom), (int) Math.ceil(client.width / zoom), (int) Math.ceil(client.height / zoom));
+    }
+
+    /**
+     * Scrolls so that the given point of the tree is in the center of the
+     * visible area, as far as possible.
+     */
+    public void scrollTo(int x, int y) {
+        Rectangle client = getClientArea();
+        setOrigin(Math.round(x * zoom) - client.width / 2, Math.round(y * zoom) - client.height / 2);
+    }
+
+    /**
+     * Paints all laid out figures as boxes without text or edges, scaled by
+     * scale, e.g. for an overview of the tree.
+     */
+    public void paintOverview(GC gc, float scale) {
+        if (root == null) {
+            return;
         }
-        treeWidth = (int) (getXCoord(node) + node.width() > treeWidth ? getXCoord(node) + node.width() : treeWidth);
-        treeHeight = (getYCoord(node) > treeHeight + NODE_HEIGHT ? getYCoord(node) + NODE_HEIGHT : treeHeight);
-        node.data().setBounds(getXCoord(node), getYCoord(node), (int) (node.width()), NODE_HEIGHT);
-        for (Node<Button> child : node.getChildren()) {
-            updateNodePositions(child);
+        for (NodeFigure figure : index.findFigures(new Rectangle(-originX, 0, treeWidth, treeHeight))) {
+            Color background = getBackground(figure);
+            gc.setBackground(background != null ? background : getDisplay().getSystemColor(SWT.COLOR_WIDGET_NORMAL_SHADOW));
+            int x = (int) ((figure.getX() + originX) * scale);
+            int y = (int) (figure.getY() * scale);
+            gc.fillRectangle(x, y, Math.max(1, (int) (figure.getWidth() * scale)), Math.max(1, (int) (figure.getHeight() * scale)));
         }
     }
 
-    private int getYCoord(Node<?> node) {
-        return (int) (node.y() * 60f);
+    /**
+     * Records the time spent measuring, laying out, indexing and painting
+     * figures in the given metrics.
+     */
+    public void setMetrics(ViewMetrics metrics) {
+        this.metrics = metrics;
     }
 
-    private int getXCoord(Node<?> node) {
-        return (int) node.x();
+    private void clear() {
+        searchQuery = null;
+        resetSearch();
+        tree = null;
+        root = null;
+        message = null;
+        hovered = null;
+        pendingEditorSync = null;
+        selected = null;
+        editorSelection = null;
+        layoutStale = layoutJob != null;
+        layoutRequests.clear();
+        fullLayoutRequested = false;
+        pendingCallbacks.clear();
+        runningCallbacks.clear();
+        index.clear();
+        tiles.clear();
+        paintedRegions.clear();
+        treeWidth = 0;
+        treeHeight = 0;
+        originX = 0;
     }
 
-    private Node<Button> constructTree(final IASTNode astNode, Composite parent) {
-        Button button = createButton(astNode.getClass().getSimpleName(), parent);
-        final Node<Button> node = createNode(button);
-        button.addMouseMoveListener(new MouseMoveListener() {
+    private void refresh() {
+        setMinWidth((int) Math.ceil(treeWidth * zoom));
+        setMinHeight((int) Math.ceil(treeHeight * zoom));
+        canvas.redraw();
+        canvas.update();
+        for (ViewportListener viewportListener : new ArrayList<>(viewportListeners)) {
+            viewportListener.treeChanged();
+        }
+    }
 
-            @Override
-            public void mouseMove(MouseEvent e) {
-                CUIPlugin.getActivePage().getActiveEditor().getEditorSite().getSelectionProvider().setSelection(new TextSelection(astNode.getFileLocation().getNodeOffset(), astNode.getFileLocation().getNodeLength()));
+    private void fireViewportChanged() {
+        for (ViewportListener viewportListener : new ArrayList<>(viewportListeners)) {
+            viewportListener.viewportChanged();
+        }
+    }
+
+    private void toggle(NodeFigure figure) {
+        tree.materializeChildren(figure);
+        figure.setExpanded(!figure.isExpanded());
+        requestLayout(Collections.singletonList(figure));
+    }
+
+    /**
+     * Lays out the tree again after the visible children or widths of
+     * figures changed, see {@link #startLayout()}.
+     */
+    private void requestLayout(Collection<NodeFigure> figures) {
+        layoutRequests.addAll(figures);
+        startLayout();
+    }
+
+    private void requestFullLayout() {
+        fullLayoutRequested = true;
+        startLayout();
+    }
+
+    /**
+     * Runs callback once all requested layouts are placed, or right away if
+     * none is pending. Callbacks are dropped if another tree is drawn
+     * meanwhile.
+     */
+    private void afterLayout(Runnable callback) {
+        if (fullLayoutRequested || !layoutRequests.isEmpty()) {
+            pendingCallbacks.add(callback);
+        } else if (layoutJob != null) {
+            runningCallbacks.add(callback);
+        } else {
+            callback.run();
+        }
+    }
+
+    /**
+     * Records the requested changes in the layout model and measures and
+     * lays out the model in a {@link TreeLayoutJob}, unless one is running
+     * already. Requests made meanwhile are collected and laid out together
+     * once the running job is done, so the model is only touched by one
+     * thread at a time.
+     */
+    private void startLayout() {
+        if (layoutJob != null || root == null) {
+            return;
+        }
+        List<NodeFigure> figures = new ArrayList<>(layoutRequests.size());
+        for (NodeFigure figure : layoutRequests) {
+            if (figure.isAttachedTo(root)) {
+                figures.add(figure);
             }
-        });
-        
-        button.addMouseListener(new MouseAdapter() {
-            
-            @Override
-            public void mouseDown(MouseEvent e) {
-                if (listener != null) {
-                    listener.nodeSelected(astNode);
+        }
+        layoutRequests.clear();
+        if (!fullLayoutRequested && figures.isEmpty()) {
+            runCallbacks(pendingCallbacks);
+            return;
+        }
+        TreeLayout.Changes changes = fullLayoutRequested ? layout.record(root) : layout.record(figures);
+        fullLayoutRequested = false;
+        runningCallbacks = new ArrayList<>(pendingCallbacks);
+        pendingCallbacks.clear();
+        layoutStale = false;
+        layoutJob = new TreeLayoutJob(this, layout, changes, textWidths, NODE_PADDING, metrics);
+        layoutJob.schedule();
+    }
+
+    /**
+     * Places the figures laid out by the {@link TreeLayoutJob} and starts
+     * the next layout, if any was requested meanwhile. Called on the UI
+     * thread.
+     */
+    void layoutComputed(TreeLayout.Changes changes) {
+        layoutJob = null;
+        List<Runnable> callbacks = runningCallbacks;
+        runningCallbacks = new ArrayList<>();
+        if (!layoutStale) {
+            layout.apply(changes);
+            if (changes.isFull()) {
+                layoutChanged();
+            } else {
+                layoutChanged(changes);
+            }
+            refresh();
+            runCallbacks(callbacks);
+        }
+        startLayout();
+    }
+
+    private void runCallbacks(List<Runnable> callbacks) {
+        List<Runnable> copy = new ArrayList<>(callbacks);
+        callbacks.clear();
+        for (Runnable callback : copy) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Reveals and highlights the first MAX_REVEALED_MATCHES found nodes and
+     * applies the filter of the last search. Returns the first revealed
+     * match.
+     */
+    private NodeFigure markMatches(List<IASTNode> found) {
+        resetSearch();
+        NodeFigure first = null;
+        for (IASTNode astNode : found.subList(0, Math.min(found.size(), MAX_REVEALED_MATCHES))) {
+            NodeFigure figure = tree.reveal(astNode);
+            if (tree.shows(figure, astNode) && figure.isEnabled()) {
+                matches.add(figure);
+                invalidate(figure);
+                if (first == null) {
+                    first = figure;
                 }
             }
-        });
-        for (IASTNode child : astNode.getChildren()) {
-            node.addChild(constructTree(child, parent));
+        }
+        if (searchFilter) {
+            applyFilter();
+        }
+        return first;
+    }
+
+    private void resetSearch() {
+        for (NodeFigure match : matches) {
+            invalidate(match);
+        }
+        matches.clear();
+        for (NodeFigure figure : filtered) {
+            figure.setFilteredChildren(null);
+        }
+        filtered.clear();
+    }
 
+    private void applyFilter() {
+        Map<NodeFigure, Set<NodeFigure>> shown = new LinkedHashMap<>();
+        for (NodeFigure match : matches) {
+            NodeFigure child = match;
+            for (NodeFigure parent = match.getParent(); parent != null; parent = parent.getParent()) {
+                Set<NodeFigure> shownChildren = shown.get(parent);
+                boolean visited = shownChildren != null;
+                if (!visited) {
+                    shownChildren = new HashSet<>();
+                    shown.put(parent, shownChildren);
+                }
+                shownChildren.add(child);
+                if (visited) {
+                    break;
+                }
+                child = parent;
+            }
+        }
+        if (shown.isEmpty()) {
+            shown.put(root, new HashSet<NodeFigure>());
         }
-        if (node.getChildren().size() == 0) {
-            Button leafButton = createButton(astNode.getRawSignature(), parent);
-            leafButton.setEnabled(false);
-            final Node<Button> leafNode = createNode(leafButton);
-            node.addChild(leafNode);
+        for (Map.Entry<NodeFigure, Set<NodeFigure>> entry : shown.entrySet()) {
+            NodeFigure parent = entry.getKey();
+            if (matches.contains(parent)) {
+                continue;
+            }
+            List<NodeFigure> shownChildren = new ArrayList<>(entry.getValue().size());
+            for (NodeFigure child : parent.getChildren()) {
+                if (entry.getValue().contains(child)) {
+                    shownChildren.add(child);
+                }
+            }
+            parent.setFilteredChildren(shownChildren);
+            filtered.add(parent);
         }
-        return node;
     }
 
-    private Button createButton(String text, Composite parent) {
-        final Button button = new Button(parent, SWT.FLAT);
-        button.setText(text);
-        FontData fontData = button.getFont().getFontData()[0];
-        fontData.setHeight(10);
-        button.setFont(new Font(parent.getDisplay(), fontData));
-        button.setVisible(false);
-        button.pack();
-        return button;
+    private void layoutChanged() {
+        ViewMetrics.Timer timer = metrics.start(ViewMetrics.Phase.INDEX);
+        updateTreeBounds();
+        index.clear();
+        index.addVisible(root);
+        invalidateMoved();
+        metrics.setFigureCount(index.getFigureCount());
+        timer.stop();
     }
 
-    private Node<Button> createNode(Button button) {
-        final Node<Button> node = new Node<>(button);
-        node.setWidth(button.getBounds().width);
-        node.treatAsLeaf(true);
-        node.data().addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseDown(MouseEvent e) {
-                
-                node.treatAsLeaf(!node.isTreatedAsLeaf());
-                for (Node<Button> child : node.getChildren()) {
-                    if (!node.isTreatedAsLeaf()) {
-                        child.treatAsLeaf(true);
-                    }
-                    child.data().setVisible(!node.isTreatedAsLeaf());
+    /**
+     * Drops the cached tiles covering figures that were added, removed or
+     * moved by the last full layout, together with their edges. Figures are
+     * compared by the area they were painted in, so tiles of unchanged parts
+     * of the tree survive even if the tree grew to the left.
+     */
+    private void invalidateMoved() {
+        Map<NodeFigure, Rectangle> regions = new HashMap<>(paintedRegions.size());
+        Deque<NodeFigure> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            NodeFigure figure = pending.pop();
+            Rectangle region = getPaintedRegion(figure);
+            regions.put(figure, region);
+            Rectangle previous = paintedRegions.remove(figure);
+            if (!region.equals(previous)) {
+                invalidate(region);
+                if (previous != null) {
+                    invalidate(previous);
                 }
-                treeWidth = 0;
-                treeHeight = 0;
-                if (!node.isTreatedAsLeaf()) {
-                    root.adjust(1f, 20f);
+            }
+            for (NodeFigure child : figure.getVisibleChildren()) {
+                pending.push(child);
+            }
+        }
+        for (Rectangle previous : paintedRegions.values()) {
+            invalidate(previous);
+        }
+        paintedRegions = regions;
+    }
+
+    /**
+     * Updates the index after an incremental layout and drops the cached
+     * tiles covering the figures that were shown, hidden or moved, together
+     * with their edges. Only the figures reported by the layout are visited.
+     */
+    private void layoutChanged(TreeLayout.Changes changes) {
+        ViewMetrics.Timer timer = metrics.start(ViewMetrics.Phase.INDEX);
+        updateTreeBounds();
+        for (NodeFigure figure : changes.getRemoved()) {
+            Rectangle previous = paintedRegions.remove(figure);
+            if (previous != null) {
+                index.remove(figure);
+                invalidate(previous);
+            }
+        }
+        for (NodeFigure figure : changes.getPlaced()) {
+            Rectangle region = getPaintedRegion(figure);
+            Rectangle previous = paintedRegions.put(figure, region);
+            invalidate(region);
+            if (previous != null && !previous.equals(region)) {
+                invalidate(previous);
+            }
+            index.update(figure);
+        }
+        metrics.setFigureCount(index.getFigureCount());
+        timer.stop();
+    }
+
+    private void updateTreeBounds() {
+        Rectangle bounds = layout.getBounds(root);
+        originX = -bounds.x;
+        treeWidth = bounds.width;
+        treeHeight = bounds.height;
+    }
+
+    /**
+     * Returns the area of the laid out tree covered by the box of figure and
+     * the edge to its parent, including the arrow head.
+     */
+    private Rectangle getPaintedRegion(NodeFigure figure) {
+        Rectangle region = figure.getBounds();
+        NodeFigure parent = figure.getParent();
+        if (parent != null) {
+            int parentX = parent.getX() + parent.getWidth() / 2;
+            int parentY = parent.getY() + parent.getHeight();
+            int nodeX = figure.getX() + figure.getWidth() / 2;
+            region = region.union(new Rectangle(Math.min(parentX, nodeX) - EDGE_MARGIN, parentY - EDGE_MARGIN, Math.abs(parentX - nodeX) + 2 * EDGE_MARGIN, figure.getY() - parentY + 2 * EDGE_MARGIN));
+        }
+        return region;
+    }
+
+    private void invalidate(NodeFigure figure) {
+        if (figure != null) {
+            invalidate(figure.getBounds());
+        }
+    }
+
+    /**
+     * Drops the cached tiles covering the given area of the laid out tree.
+     */
+    private void invalidate(Rectangle area) {
+        int x = (int) Math.floor(area.x * zoom) - 1;
+        int y = (int) Math.floor(area.y * zoom) - 1;
+        tiles.invalidate(new Rectangle(x, y, (int) Math.ceil(area.width * zoom) + 3, (int) Math.ceil(area.height * zoom) + 3));
+    }
+
+    private void cancelEditorSync() {
+        pendingEditorSync = null;
+        getDisplay().timerExec(-1, editorSync);
+    }
+
+    private void selectInEditor(NodeFigure figure) {
+        IWorkbenchPage page = CUIPlugin.getActivePage();
+        IEditorPart editor = page != null ? page.getActiveEditor() : null;
+        IASTFileLocation location = figure.getASTNode().getFileLocation();
+        if (editor == null || location == null || figure.getASTNode().getTranslationUnit() != tree.getAST()) {
+            return;
+        }
+        editorSelection = new TextSelection(location.getNodeOffset(), location.getNodeLength());
+        editor.getEditorSite().getSelectionProvider().setSelection(editorSelection);
+    }
+
+    private void showFigure(NodeFigure figure) {
+        Rectangle client = getClientArea();
+        Point origin = getOrigin();
+        int x = Math.round((figure.getX() + originX) * zoom);
+        int y = Math.round(figure.getY() * zoom);
+        int width = Math.round(figure.getWidth() * zoom);
+        int height = Math.round(figure.getHeight() * zoom);
+        if (x < origin.x || y < origin.y || x + width > origin.x + client.width || y + height > origin.y + client.height) {
+            setOrigin(x + (width - client.width) / 2, y + (height - client.height) / 2);
+        }
+    }
+
+    private void setHovered(NodeFigure figure) {
+        if (figure == hovered) {
+            return;
+        }
+        NodeFigure previous = hovered;
+        hovered = figure;
+        redrawFigure(previous);
+        redrawFigure(hovered);
+    }
+
+    private void redrawFigure(NodeFigure figure) {
+        if (figure != null) {
+            invalidate(figure);
+            int x = (int) ((figure.getX() + originX) * zoom);
+            int y = (int) (figure.getY() * zoom);
+            canvas.redraw(x, y, (int) Math.ceil(figure.getWidth() * zoom) + 1, (int) Math.ceil(figure.getHeight() * zoom) + 1, false);
+        }
+    }
+
+    /**
+     * Copies the tiles covering the given area of the canvas onto gc and
+     * renders the tiles that are not cached. Tiles are aligned to the laid
+     * out tree rather than to the canvas, so they stay valid when the tree
+     * grows to the left and originX changes.
+     */
+    private void paintTiles(GC gc, Rectangle area) {
+        ViewMetrics.Timer timer = metrics.start(ViewMetrics.Phase.PAINT);
+        int offsetX = Math.round(originX * zoom);
+        int lastColumn = tiles.indexOf(area.x + area.width - 1 - offsetX);
+        int lastRow = tiles.indexOf(area.y + area.height - 1);
+        int paintedFigures = 0;
+        for (int row = tiles.indexOf(area.y); row <= lastRow; row++) {
+            for (int column = tiles.indexOf(area.x - offsetX); column <= lastColumn; column++) {
+                Image tile = tiles.get(column, row);
+                if (tile == null) {
+                    tile = new Image(getDisplay(), TILE_SIZE, TILE_SIZE);
+                    paintedFigures += renderTile(tile, column, row);
+                    tiles.put(column, row, tile);
                 }
-                updateNodePositions(root);
-                canvas.redraw();
-                canvas.update();
+                gc.drawImage(tile, column * TILE_SIZE + offsetX, row * TILE_SIZE);
             }
-        });
-        return node;
+        }
+        metrics.setPaintedFigureCount(paintedFigures);
+        timer.stop();
+    }
+
+    /**
+     * Renders the tile at column and row of the zoomed tree. Returns the
+     * number of painted figures.
+     */
+    private int renderTile(Image tile, int column, int row) {
+        GC gc = new GC(tile);
+        Transform transform = new Transform(getDisplay());
+        try {
+            gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+            gc.fillRectangle(0, 0, TILE_SIZE, TILE_SIZE);
+            gc.setFont(font);
+            transform.translate(-column * TILE_SIZE, -row * TILE_SIZE);
+            transform.scale(zoom, zoom);
+            gc.setTransform(transform);
+            int size = (int) Math.ceil(TILE_SIZE / zoom) + 2;
+            return paintTree(gc, new Rectangle((int) Math.floor(column * TILE_SIZE / zoom) - 1, (int) Math.floor(row * TILE_SIZE / zoom) - 1, size, size));
+        } finally {
+            transform.dispose();
+            gc.dispose();
+        }
+    }
+
+    /**
+     * Paints the figures and edges in the given area of the laid out tree.
+     * Returns the number of painted figures.
+     */
+    private int paintTree(GC gc, Rectangle area) {
+        boolean detailed = zoom >= DETAIL_ZOOM;
+        Set<NodeFigure> parents = new HashSet<>();
+        for (NodeFigure figure : index.findEdges(area)) {
+            if (detailed) {
+                EdgePainter.paintEdge(gc, figure, 0);
+            } else if (parents.add(figure.getParent())) {
+                EdgePainter.paintChildBus(gc, figure.getParent(), 0);
+            }
+        }
+        Collection<NodeFigure> figures = index.findFigures(area);
+        for (NodeFigure figure : figures) {
+            drawFigure(gc, figure, detailed);
+        }
+        return figures.size();
+    }
+
+    /**
+     * Returns the highlight color of the figure, or null if it is not
+     * highlighted.
+     */
+    private Color getBackground(NodeFigure figure) {
+        if (figure == selected) {
+            return getDisplay().getSystemColor(SWT.COLOR_LIST_SELECTION);
+        }
+        if (figure == hovered) {
+            return getDisplay().getSystemColor(SWT.COLOR_WIDGET_LIGHT_SHADOW);
+        }
+        Color changeColor = changeColors.get(tree.getChange(figure));
+        if (changeColor != null) {
+            return changeColor;
+        }
+        return matches.contains(figure) ? getDisplay().getSystemColor(SWT.COLOR_INFO_BACKGROUND) : null;
+    }
+
+    private void drawFigure(GC gc, NodeFigure figure, boolean detailed) {
+        Rectangle bounds = figure.getBounds();
+        Color background = getBackground(figure);
+        gc.setBackground(background != null ? background : getDisplay().getSystemColor(SWT.COLOR_WIDGET_BACKGROUND));
+        gc.fillRectangle(bounds);
+        if (!detailed) {
+            return;
+        }
+        int foreground = figure.isEnabled() ? SWT.COLOR_WIDGET_FOREGROUND : SWT.COLOR_DARK_GRAY;
+        if (figure == selected) {
+            foreground = SWT.COLOR_LIST_SELECTION_TEXT;
+        }
+        gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_WIDGET_NORMAL_SHADOW));
+        gc.drawRectangle(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+        gc.setForeground(getDisplay().getSystemColor(foreground));
+        Point extent = gc.textExtent(figure.getText());
+        gc.drawText(figure.getText(), bounds.x + (bounds.width - extent.x) / 2, bounds.y + (bounds.height - extent.y) / 2, true);
+        gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
+    }
+
+    private NodeFigure findFigureAt(int x, int y) {
+        return root != null ? index.findFigureAt((int) (x / zoom) - originX, (int) (y / zoom)) : null;
     }
 }
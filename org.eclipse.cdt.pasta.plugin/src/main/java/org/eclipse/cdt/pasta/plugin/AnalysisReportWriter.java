@@ -0,0 +1,100 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the results of a {@link ProjectAnalysis} as JSON lines: one object
+ * per translation unit as soon as it has been analyzed, followed by a summary
+ * object with the merged statistics. Write errors are remembered and
+ * reported by {@link #writeSummary(ASTStatistics, int, long)}.
+ */
+public class AnalysisReportWriter implements ProjectAnalysis.Listener {
+
+    private final Writer writer;
+    private int failed;
+    private IOException error;
+
+    public AnalysisReportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void analyzed(ProjectAnalysis.Result result) {
+        if (error != null) {
+            return;
+        }
+        try {
+            writer.write("{\"file\":");
+            Json.writeString(writer, result.getPath());
+            writer.write(",\"parseMillis\":" + toMillis(result.getParseTime()));
+            writer.write(",\"analysisMillis\":" + toMillis(result.getAnalysisTime()));
+            if (result.getStatistics() != null) {
+                writer.write(',');
+                writeStatistics(result.getStatistics());
+            } else {
+                failed++;
+                writer.write(",\"error\":");
+                Json.writeString(writer, result.getError());
+            }
+            writer.write("}\n");
+            writer.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    public void writeSummary(ASTStatistics total, int threads, long elapsedNanos) throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        writer.write("{\"summary\":true,\"threads\":" + threads);
+        writer.write(",\"elapsedMillis\":" + toMillis(elapsedNanos));
+        writer.write(",\"failed\":" + failed + ",");
+        writeStatistics(total);
+        writer.write("}\n");
+        writer.flush();
+    }
+
+    private void writeStatistics(ASTStatistics statistics) throws IOException {
+        writer.write("\"nodes\":" + statistics.getNodeCount());
+        writer.write(",\"names\":" + statistics.getNameCount());
+        writer.write(",\"maxDepth\":" + statistics.getMaxDepth());
+        writer.write(",\"meanDepth\":" + format(statistics.getMeanDepth()));
+        writer.write(",\"maxFanOut\":" + statistics.getMaxFanOut());
+        writer.write(",\"meanFanOut\":" + format(statistics.getMeanFanOut()));
+        writer.write(",\"problemBindings\":" + statistics.getProblemBindingCount());
+        writer.write(",\"nodeTypes\":");
+        writeHistogram(statistics.getNodeTypes());
+        writer.write(",\"nodeHierarchyTypes\":");
+        writeHistogram(statistics.getNodeHierarchyTypes());
+        writer.write(",\"bindingTypes\":");
+        writeHistogram(statistics.getBindingTypes());
+        writer.write(",\"bindingHierarchyTypes\":");
+        writeHistogram(statistics.getBindingHierarchyTypes());
+    }
+
+    private void writeHistogram(Map<String, Integer> histogram) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : histogram.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            Json.writeString(writer, entry.getKey());
+            writer.write(":" + entry.getValue());
+            first = false;
+        }
+        writer.write('}');
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
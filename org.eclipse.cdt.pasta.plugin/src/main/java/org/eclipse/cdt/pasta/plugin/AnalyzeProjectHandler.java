@@ -0,0 +1,65 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.File;
+
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+/**
+ * Asks for a report file and starts an {@link AnalyzeProjectJob} for the
+ * selected C/C++ project.
+ */
+public class AnalyzeProjectHandler extends AbstractHandler {
+
+    @Override
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        Shell shell = HandlerUtil.getActiveShell(event);
+        ICProject project = getSelectedProject(HandlerUtil.getCurrentSelection(event));
+        if (project == null) {
+            MessageDialog.openInformation(shell, "Analyze ASTs", "Please select a C/C++ project.");
+            return null;
+        }
+        FileDialog dialog = new FileDialog(shell, SWT.SAVE);
+        dialog.setText("Save AST Report");
+        dialog.setFilterExtensions(new String[] { "*.jsonl", "*.*" });
+        dialog.setFileName(project.getElementName() + "-ast-report.jsonl");
+        dialog.setOverwrite(true);
+        String path = dialog.open();
+        if (path != null) {
+            new AnalyzeProjectJob(project, new File(path), true).schedule();
+        }
+        return null;
+    }
+
+    static ICProject getSelectedProject(ISelection selection) {
+        if (!(selection instanceof IStructuredSelection)) {
+            return null;
+        }
+        Object element = ((IStructuredSelection) selection).getFirstElement();
+        if (element instanceof ICProject) {
+            return (ICProject) element;
+        }
+        if (element instanceof IAdaptable) {
+            IResource resource = (IResource) ((IAdaptable) element).getAdapter(IResource.class);
+            if (resource != null) {
+                IProject project = resource.getProject();
+                ICProject cProject = CoreModel.getDefault().create(project);
+                return cProject != null && cProject.exists() ? cProject : null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Runs a {@link ProjectAnalysis} with one worker per processor and streams
+ * the report to a file.
+ */
+public class AnalyzeProjectJob extends Job {
+
+    private final ICProject project;
+    private final File reportFile;
+    private final boolean resolveBindings;
+
+    public AnalyzeProjectJob(ICProject project, File reportFile, boolean resolveBindings) {
+        super("Analyzing ASTs of " + project.getElementName());
+        this.project = project;
+        this.reportFile = reportFile;
+        this.resolveBindings = resolveBindings;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"))) {
+            AnalysisReportWriter report = new AnalysisReportWriter(writer);
+            ASTStatistics total = new ProjectAnalysis(project, threads, resolveBindings).run(report, monitor);
+            report.writeSummary(total, threads, System.nanoTime() - start);
+            return Status.OK_STATUS;
+        } catch (IOException e) {
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not write " + reportFile, e);
+        } catch (CoreException e) {
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not analyze " + project.getElementName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.CANCEL_STATUS;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reflection data of a class as displayed by the {@link NodeWidget}: field
+ * accessors, public method signatures and the flattened type hierarchy. The
+ * data is computed once per class and cached in a {@link ClassValue}, so
+ * inspecting many nodes of the same type does no repeated reflection work.
+ */
+public class ClassMetadata {
+
+    private static final ClassValue<ClassMetadata> CACHE = new ClassValue<ClassMetadata>() {
+
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> type;
+    private volatile List<FieldAccessor> fields;
+    private final List<String> methodSignatures;
+    private final List<HierarchyEntry> typeHierarchy;
+    private final MethodHandle typeGetter;
+
+    private ClassMetadata(Class<?> type) {
+        this.type = type;
+        methodSignatures = Collections.unmodifiableList(collectMethodSignatures(type));
+        List<HierarchyEntry> hierarchy = new ArrayList<>();
+        collectSuperclasses(hierarchy, type, 0);
+        typeHierarchy = Collections.unmodifiableList(hierarchy);
+        typeGetter = findGetter(type, "getType");
+    }
+
+    public static ClassMetadata of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Returns the field accessors, which are created on first use since
+     * users of the type hierarchy alone, like {@link ASTStatistics}, do not
+     * need them.
+     */
+    public List<FieldAccessor> getFields() {
+        List<FieldAccessor> result = fields;
+        if (result == null) {
+            result = Collections.unmodifiableList(collectFields(type));
+            fields = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the public methods of the class as "name;ReturnType".
+     */
+    public List<String> getMethodSignatures() {
+        return methodSignatures;
+    }
+
+    /**
+     * Returns the class, its interfaces and superclasses in pre-order. Every
+     * superclass and interface is nested one level below the type it was
+     * reached from.
+     */
+    public List<HierarchyEntry> getTypeHierarchy() {
+        return typeHierarchy;
+    }
+
+    /**
+     * Returns the value of a public no-argument getType() method, or null if
+     * the class has none.
+     */
+    public Object getType(Object target) throws Throwable {
+        return typeGetter != null ? (Object) typeGetter.invokeExact(target) : null;
+    }
+
+    private static List<FieldAccessor> collectFields(Class<?> type) {
+        Set<Field> fields = new LinkedHashSet<>(Arrays.asList(type.getFields()));
+        fields.addAll(Arrays.asList(type.getDeclaredFields()));
+        List<FieldAccessor> accessors = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            accessors.add(new FieldAccessor(field.getName(), unreflectGetter(field)));
+        }
+        return accessors;
+    }
+
+    private static MethodHandle unreflectGetter(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(GETTER_TYPE);
+        } catch (Exception e) {
+            PastaPlugin.log(e);
+            return null;
+        }
+    }
+
+    private static List<String> collectMethodSignatures(Class<?> type) {
+        List<String> signatures = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isPublic(method.getModifiers())) {
+                signatures.add(method.getName() + ";" + method.getReturnType().getSimpleName());
+            }
+        }
+        return signatures;
+    }
+
+    private static void collectSuperclasses(List<HierarchyEntry> hierarchy, Class<?> type, int depth) {
+        if (type == null) {
+            return;
+        }
+        hierarchy.add(new HierarchyEntry(type.getSimpleName(), depth));
+        collectInterfaces(hierarchy, type, depth + 1);
+        collectSuperclasses(hierarchy, type.getSuperclass(), depth + 1);
+    }
+
+    private static void collectInterfaces(List<HierarchyEntry> hierarchy, Class<?> type, int depth) {
+        for (Class<?> interfaceClass : type.getInterfaces()) {
+            hierarchy.add(new HierarchyEntry(interfaceClass.getSimpleName(), depth));
+            collectInterfaces(hierarchy, interfaceClass, depth + 1);
+        }
+    }
+
+    private static MethodHandle findGetter(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the value of one field through a precomputed method handle.
+     */
+    public static class FieldAccessor {
+
+        private final String name;
+        private final MethodHandle getter;
+
+        FieldAccessor(String name, MethodHandle getter) {
+            this.name = name;
+            this.getter = getter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Object get(Object target) {
+            if (getter == null) {
+                return "error loading field value";
+            }
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable e) {
+                PastaPlugin.log(e);
+                return "error loading field value";
+            }
+        }
+    }
+
+    public static class HierarchyEntry {
+
+        private final String name;
+        private final int depth;
+
+        HierarchyEntry(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * The layout model of the visible figures below a root, kept as a struct of
+ * arrays. Every visible figure owns a slot in the arrays, which link it to
+ * its parent, first child, last child and next sibling and hold its depth,
+ * width, center relative to its parent and absolute center. Figures only
+ * remember their slot, the slots of hidden subtrees are released and reused.
+ * <p>
+ * The layout places subtrees like a tidy tree: each child as close to its
+ * left neighbors as the sibling and subtree distances allow, the parent
+ * centered above its first and last child. The contours of neighboring
+ * subtrees are followed through threads in the style of Reingold and
+ * Tilford, so the model needs a constant amount of memory per figure. Every
+ * thread remembers the merge of children that created it and is only
+ * followed while that merge is current and not above the running one. After
+ * a change only the children of the figures on the path to the root are
+ * placed again, and only the figures that moved get new positions.
+ * <p>
+ * The figures are only read by {@link #sync(NodeFigure, List)}, measuring
+ * and laying out touch nothing but the arrays and the texts of the figures.
+ * A tree may only be used by one thread at a time.
+ */
+public class CompactTree {
+
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+    /** The children of the node have to be placed again. */
+    private static final byte MERGE = 1;
+    /** The node has not been laid out since it was shown. */
+    private static final byte SHOWN = 2;
+    /** The width of the node changed since the last layout. */
+    private static final byte RESIZED = 4;
+    /** The node has been collected for the running layout. */
+    private static final byte COLLECTED = 8;
+
+    private final NodeFigure root;
+    private NodeFigure[] figures = new NodeFigure[0];
+    private int[] parents = new int[0];
+    private int[] firstChildren = new int[0];
+    private int[] lastChildren = new int[0];
+    private int[] nextSiblings = new int[0];
+    private int[] depths = new int[0];
+    private int[] widths = new int[0];
+    private float[] relativeXs = new float[0];
+    private float[] xs = new float[0];
+    private int[] threads = new int[0];
+    private float[] threadOffsets = new float[0];
+    private int[] threadOwners = new int[0];
+    private int[] threadStamps = new int[0];
+    private int[] mergeStamps = new int[0];
+    private byte[] flags = new byte[0];
+    private int end;
+    private int size;
+    private int free = NONE;
+    private int[] pending = new int[16];
+    private int pendingCount;
+    private int stamp;
+    private int mergeDepth;
+
+    /**
+     * Creates the model of root and all its visible descendants, none of
+     * which has been laid out yet.
+     */
+    public CompactTree(NodeFigure root) {
+        this.root = root;
+        addVisible(allocate(root, NONE));
+    }
+
+    public NodeFigure getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of figures in the model.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether figure is one of the visible figures of the model.
+     */
+    public boolean contains(NodeFigure figure) {
+        return slotOf(figure) != NONE;
+    }
+
+    /**
+     * Mirrors the visible children and the width of figure, if it is part of
+     * the model. Children that are no longer visible are released together
+     * with their subtrees, which are added to removed, newly visible children
+     * are added together with their visible descendants.
+     */
+    void sync(NodeFigure figure, List<NodeFigure> removed) {
+        int node = slotOf(figure);
+        if (node == NONE) {
+            return;
+        }
+        int width = figure.getWidth();
+        if (width != 0 && width != widths[node]) {
+            widths[node] = width;
+            mark(node, RESIZED);
+            markPath(node);
+        }
+        List<NodeFigure> visible = figure.getVisibleChildren();
+        int child = firstChildren[node];
+        int index = 0;
+        while (child != NONE && index < visible.size() && figures[child] == visible.get(index)) {
+            child = nextSiblings[child];
+            index++;
+        }
+        if (child == NONE && index == visible.size()) {
+            return;
+        }
+        Set<NodeFigure> shown = new HashSet<>(visible);
+        for (child = firstChildren[node]; child != NONE;) {
+            int next = nextSiblings[child];
+            if (!shown.contains(figures[child])) {
+                release(child, removed);
+            }
+            child = next;
+        }
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        for (NodeFigure visibleChild : visible) {
+            int slot = slotOf(visibleChild);
+            if (slot != NONE && parents[slot] != node) {
+                unlink(slot);
+                release(slot, removed);
+                slot = NONE;
+            }
+            if (slot == NONE) {
+                addVisible(allocate(visibleChild, node));
+            } else {
+                link(node, slot);
+            }
+        }
+        markPath(node);
+    }
+
+    /**
+     * Sets the width of all figures that were added since the last layout
+     * and have not been measured yet to the width of their text plus padding.
+     * The texts are measured at once.
+     */
+    public void measure(TextWidths textWidths, int padding) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < pendingCount; i++) {
+            if (isUnmeasured(pending[i])) {
+                texts.add(figures[pending[i]].getText());
+            }
+        }
+        if (texts.isEmpty()) {
+            return;
+        }
+        textWidths.prefetch(texts);
+        for (int i = 0; i < pendingCount; i++) {
+            int node = pending[i];
+            if (isUnmeasured(node)) {
+                widths[node] = textWidths.getWidth(figures[node].getText()) + padding;
+            }
+        }
+    }
+
+    /**
+     * Places the children of all nodes whose visible subtree changed since
+     * the last layout, deepest first, and moves the nodes whose center
+     * changed, with the root centered at x = 0. Every node that was shown,
+     * resized or updated, that moved or whose parent moved is reported to
+     * changes together with its new box.
+     */
+    void layout(float siblingDistance, float subtreeDistance, TreeLayout.Changes changes) {
+        int[] merges = collectMerges();
+        for (int i = 0; i < merges.length; i++) {
+            placeChildren(merges[i], siblingDistance, subtreeDistance);
+        }
+        place(changes);
+        for (int i = 0; i < pendingCount; i++) {
+            flags[pending[i]] = 0;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Returns the area covered by the laid out tree, found by following the
+     * left and right contour of the root.
+     */
+    Rectangle getBounds(int levelHeight, int nodeHeight) {
+        mergeDepth = 0;
+        float left = 0f;
+        float right = 0f;
+        int levels = 0;
+        for (int node = ROOT; node != NONE; node = nextLeft(node)) {
+            left = Math.min(left, xs[node] - widths[node] / 2f);
+            levels++;
+        }
+        for (int node = ROOT; node != NONE; node = nextRight(node)) {
+            right = Math.max(right, xs[node] + widths[node] / 2f);
+        }
+        int x = (int) Math.floor(left);
+        return new Rectangle(x, 0, (int) Math.ceil(right) - x, (levels - 1) * levelHeight + nodeHeight);
+    }
+
+    private boolean isUnmeasured(int node) {
+        return figures[node] != null && (flags[node] & SHOWN) != 0 && widths[node] == 0;
+    }
+
+    private int slotOf(NodeFigure figure) {
+        int slot = figure.slot;
+        return slot >= 0 && slot < end && figures[slot] == figure ? slot : NONE;
+    }
+
+    private int allocate(NodeFigure figure, int parent) {
+        int slot;
+        if (free != NONE) {
+            slot = free;
+            free = nextSiblings[slot];
+        } else {
+            if (end == figures.length) {
+                grow();
+            }
+            slot = end++;
+        }
+        figures[slot] = figure;
+        figure.slot = slot;
+        parents[slot] = parent;
+        firstChildren[slot] = NONE;
+        lastChildren[slot] = NONE;
+        depths[slot] = parent == NONE ? 0 : depths[parent] + 1;
+        widths[slot] = figure.getWidth();
+        relativeXs[slot] = 0f;
+        xs[slot] = 0f;
+        threads[slot] = NONE;
+        threadOwners[slot] = NONE;
+        mergeStamps[slot] = 0;
+        flags[slot] = 0;
+        size++;
+        if (parent == NONE) {
+            nextSiblings[slot] = NONE;
+        } else {
+            link(parent, slot);
+        }
+        mark(slot, SHOWN);
+        markPath(slot);
+        return slot;
+    }
+
+    private void addVisible(int slot) {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = slot;
+        while (top > 0) {
+            int node = stack[--top];
+            for (NodeFigure child : figures[node].getVisibleChildren()) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = allocate(child, node);
+            }
+        }
+    }
+
+    private void link(int parent, int child) {
+        nextSiblings[child] = NONE;
+        if (lastChildren[parent] == NONE) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+    }
+
+    /**
+     * Removes slot from the children of its parent.
+     */
+    private void unlink(int slot) {
+        int parent = parents[slot];
+        int previous = NONE;
+        for (int child = firstChildren[parent]; child != slot; child = nextSiblings[child]) {
+            previous = child;
+        }
+        if (previous == NONE) {
+            firstChildren[parent] = nextSiblings[slot];
+        } else {
+            nextSiblings[previous] = nextSiblings[slot];
+        }
+        if (lastChildren[parent] == slot) {
+            lastChildren[parent] = previous;
+        }
+        markPath(parent);
+    }
+
+    /**
+     * Releases the slots of the subtree at slot, which must already be
+     * unlinked from its parent or be relinked afterwards.
+     */
+    private void release(int slot, List<NodeFigure> removed) {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = slot;
+        while (top > 0) {
+            int node = stack[--top];
+            for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = child;
+            }
+            NodeFigure figure = figures[node];
+            removed.add(figure);
+            if (figure.slot == node) {
+                figure.slot = NONE;
+            }
+            figures[node] = null;
+            flags[node] = 0;
+            nextSiblings[node] = free;
+            free = node;
+            size--;
+        }
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, figures.length * 2);
+        figures = Arrays.copyOf(figures, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        lastChildren = Arrays.copyOf(lastChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        relativeXs = Arrays.copyOf(relativeXs, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        threads = Arrays.copyOf(threads, capacity);
+        threadOffsets = Arrays.copyOf(threadOffsets, capacity);
+        threadOwners = Arrays.copyOf(threadOwners, capacity);
+        threadStamps = Arrays.copyOf(threadStamps, capacity);
+        mergeStamps = Arrays.copyOf(mergeStamps, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void mark(int node, byte flag) {
+        if (flags[node] == 0) {
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = node;
+        }
+        flags[node] |= flag;
+    }
+
+    /**
+     * Marks node and its ancestors for placing their children again. The
+     * ancestors of a marked node are always marked as well.
+     */
+    private void markPath(int node) {
+        for (int current = node; current != NONE && (flags[current] & MERGE) == 0; current = parents[current]) {
+            mark(current, MERGE);
+        }
+    }
+
+    /**
+     * Returns the marked nodes that have children, the deepest first. A
+     * pending node may be listed twice if its slot was released and reused.
+     */
+    private int[] collectMerges() {
+        int[] collected = new int[pendingCount];
+        int count = 0;
+        int maxDepth = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            int node = pending[i];
+            if (figures[node] != null && (flags[node] & (MERGE | COLLECTED)) == MERGE && firstChildren[node] != NONE) {
+                flags[node] |= COLLECTED;
+                collected[count++] = node;
+                maxDepth = Math.max(maxDepth, depths[node]);
+            }
+        }
+        int[] starts = new int[maxDepth + 2];
+        for (int i = 0; i < count; i++) {
+            flags[collected[i]] &= ~COLLECTED;
+            starts[maxDepth - depths[collected[i]] + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] merges = new int[count];
+        for (int i = 0; i < count; i++) {
+            merges[starts[maxDepth - depths[collected[i]]]++] = collected[i];
+        }
+        return merges;
+    }
+
+    private void placeChildren(int node, float siblingDistance, float subtreeDistance) {
+        mergeStamps[node] = ++stamp;
+        mergeDepth = depths[node];
+        int first = firstChildren[node];
+        relativeXs[first] = 0f;
+        int previous = first;
+        for (int child = nextSiblings[first]; child != NONE; child = nextSiblings[child]) {
+            float offset = separate(previous, child, siblingDistance, subtreeDistance);
+            relativeXs[child] = offset;
+            connect(node, first, previous, child, offset);
+            previous = child;
+        }
+        float mid = (relativeXs[first] + relativeXs[previous]) / 2f;
+        for (int child = first; child != NONE; child = nextSiblings[child]) {
+            relativeXs[child] -= mid;
+        }
+    }
+
+    /**
+     * Returns the smallest offset of child relative to the first child such
+     * that its subtree keeps its distance to the subtrees of all children up
+     * to previous.
+     */
+    private float separate(int previous, int child, float siblingDistance, float subtreeDistance) {
+        int right = previous;
+        int left = child;
+        float rightX = relativeXs[previous];
+        float leftX = 0f;
+        float distance = siblingDistance;
+        float offset = Float.NEGATIVE_INFINITY;
+        while (true) {
+            offset = Math.max(offset, rightX + widths[right] / 2f - leftX + widths[left] / 2f + distance);
+            int nextRight = nextRight(right);
+            int nextLeft = nextLeft(left);
+            if (nextRight == NONE || nextLeft == NONE) {
+                return offset;
+            }
+            rightX += rightStep(right);
+            leftX += leftStep(left);
+            right = nextRight;
+            left = nextLeft;
+            distance = subtreeDistance;
+        }
+    }
+
+    /**
+     * Threads the contours after child has been placed at offset: if the
+     * subtree of child is deeper than those of its left siblings, the left
+     * contour of the siblings continues in the left contour of child, if it
+     * is shallower, the right contour of child continues in the right contour
+     * of the siblings.
+     */
+    private void connect(int node, int first, int previous, int child, float offset) {
+        int outerLeft = first;
+        int innerRight = previous;
+        int innerLeft = child;
+        int outerRight = child;
+        float outerLeftX = relativeXs[first];
+        float innerRightX = relativeXs[previous];
+        float innerLeftX = offset;
+        float outerRightX = offset;
+        while (true) {
+            int nextInnerRight = nextRight(innerRight);
+            int nextInnerLeft = nextLeft(innerLeft);
+            if (nextInnerRight == NONE || nextInnerLeft == NONE) {
+                if (nextInnerLeft != NONE) {
+                    setThread(outerLeft, nextInnerLeft, innerLeftX + leftStep(innerLeft) - outerLeftX, node);
+                } else if (nextInnerRight != NONE) {
+                    setThread(outerRight, nextInnerRight, innerRightX + rightStep(innerRight) - outerRightX, node);
+                }
+                return;
+            }
+            outerLeftX += leftStep(outerLeft);
+            innerRightX += rightStep(innerRight);
+            innerLeftX += leftStep(innerLeft);
+            outerRightX += rightStep(outerRight);
+            outerLeft = nextLeft(outerLeft);
+            innerRight = nextInnerRight;
+            innerLeft = nextInnerLeft;
+            outerRight = nextRight(outerRight);
+        }
+    }
+
+    private void setThread(int node, int target, float offset, int owner) {
+        threads[node] = target;
+        threadOffsets[node] = offset;
+        threadOwners[node] = owner;
+        threadStamps[node] = mergeStamps[owner];
+    }
+
+    /**
+     * Returns the thread of a leaf if the merge that created it is still
+     * current and not above the running merge, otherwise the leaf ends the
+     * contour.
+     */
+    private int thread(int node) {
+        int owner = threadOwners[node];
+        if (threads[node] == NONE || owner == NONE || figures[owner] == null || threadStamps[node] != mergeStamps[owner] || depths[owner] < mergeDepth) {
+            return NONE;
+        }
+        return threads[node];
+    }
+
+    private int nextLeft(int node) {
+        return firstChildren[node] != NONE ? firstChildren[node] : thread(node);
+    }
+
+    private int nextRight(int node) {
+        return lastChildren[node] != NONE ? lastChildren[node] : thread(node);
+    }
+
+    private float leftStep(int node) {
+        return firstChildren[node] != NONE ? relativeXs[firstChildren[node]] : threadOffsets[node];
+    }
+
+    private float rightStep(int node) {
+        return lastChildren[node] != NONE ? relativeXs[lastChildren[node]] : threadOffsets[node];
+    }
+
+    /**
+     * Assigns the new centers top-down. The subtree of a node that neither
+     * moved nor had its children placed again keeps its positions and is not
+     * visited.
+     */
+    private void place(TreeLayout.Changes changes) {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = ROOT << 1;
+        while (top > 0) {
+            int entry = stack[--top];
+            int node = entry >>> 1;
+            boolean parentPlaced = (entry & 1) != 0;
+            int parent = parents[node];
+            float x = parent == NONE ? 0f : xs[parent] + relativeXs[node];
+            float oldX = xs[node];
+            int width = widths[node];
+            int left = Math.round(x - width / 2f);
+            boolean shown = (flags[node] & SHOWN) != 0;
+            xs[node] = x;
+            boolean placed = shown || parentPlaced || left != Math.round(oldX - width / 2f) || (flags[node] & RESIZED) != 0 || changes.isUpdated(figures[node]);
+            if (placed) {
+                changes.place(figures[node], left, width);
+            }
+            if (shown || (flags[node] & MERGE) != 0 || x != oldX) {
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = child << 1 | (placed ? 1 : 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.model.ITranslationUnit;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Parses a translation unit and, if a baseline is given, computes the
+ * {@link TreeDiff} between the baseline and the new AST in the background.
+ * The widget then shows the {@link DiffTree}, or the plain tree without a
+ * baseline, and the listener is notified on the UI thread.
+ */
+public class DiffASTJob extends Job {
+
+    public interface Listener {
+
+        /**
+         * Called after the widget shows ast. The diff is null if there was no
+         * baseline.
+         */
+        void parsed(IASTTranslationUnit ast, TreeDiff diff);
+    }
+
+    private final ITranslationUnit translationUnit;
+    private final IASTTranslationUnit baseline;
+    private final ASTWidget widget;
+    private final Listener listener;
+    private final Display display;
+
+    public DiffASTJob(ITranslationUnit translationUnit, IASTTranslationUnit baseline, ASTWidget widget, Listener listener) {
+        super("Comparing " + translationUnit.getElementName());
+        this.translationUnit = translationUnit;
+        this.baseline = baseline;
+        this.widget = widget;
+        this.listener = listener;
+        this.display = widget.getDisplay();
+    }
+
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        monitor.beginTask(getName(), 2);
+        try {
+            final IASTTranslationUnit ast = parse();
+            monitor.worked(1);
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            monitor.subTask("Computing differences");
+            final TreeDiff diff = baseline != null ? TreeDiff.compute(baseline, ast) : null;
+            final ViewTree tree = diff != null ? new DiffTree(ast, diff) : new ViewTree(ast);
+            widget.prepareTree(tree);
+            monitor.worked(1);
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            updateWidget(monitor, new Runnable() {
+
+                @Override
+                public void run() {
+                    widget.drawTree(tree);
+                    listener.parsed(ast, diff);
+                }
+            });
+            return Status.OK_STATUS;
+        } catch (CoreException e) {
+            updateWidget(monitor, new Runnable() {
+
+                @Override
+                public void run() {
+                    widget.showMessage("Could not parse " + translationUnit.getElementName());
+                }
+            });
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not parse " + translationUnit.getElementName(), e);
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            monitor.done();
+        }
+    }
+
+    private void updateWidget(final IProgressMonitor monitor, final Runnable update) {
+        if (display.isDisposed()) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!monitor.isCanceled() && !widget.isDisposed()) {
+                    update.run();
+                }
+            }
+        });
+    }
+
+    private IASTTranslationUnit parse() throws CoreException, InterruptedException {
+        IIndex index = CCorePlugin.getIndexManager().getIndex(translationUnit.getCProject());
+        index.acquireReadLock();
+        try {
+            return translationUnit.getAST(index, ITranslationUnit.AST_SKIP_INDEXED_HEADERS);
+        } finally {
+            index.releaseReadLock();
+        }
+    }
+}
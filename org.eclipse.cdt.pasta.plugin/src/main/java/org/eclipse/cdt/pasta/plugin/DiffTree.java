@@ -0,0 +1,115 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+
+/**
+ * A {@link ViewTree} of the newer AST of a {@link TreeDiff} that also shows
+ * the deleted nodes of the older AST. Deleted children are placed after the
+ * figure of their preceding sibling that is still present, updated leaves
+ * show their old and new text. The changes are revealed on construction,
+ * unchanged subtrees stay collapsed.
+ */
+public class DiffTree extends ViewTree {
+
+    private static final int MAX_REVEALED_CHANGES = 500;
+
+    private final TreeDiff diff;
+
+    public DiffTree(IASTTranslationUnit ast, TreeDiff diff) {
+        super(ast);
+        this.diff = diff;
+        List<IASTNode> changes = diff.getChangedRoots();
+        for (IASTNode change : changes.subList(0, Math.min(changes.size(), MAX_REVEALED_CHANGES))) {
+            if (!diff.isBefore(change)) {
+                reveal(change);
+            } else if (change.getParent() != null && diff.getMatch(change.getParent()) != null) {
+                NodeFigure parent = reveal(diff.getMatch(change.getParent()));
+                materializeChildren(parent);
+                parent.setExpanded(true);
+            }
+        }
+    }
+
+    public TreeDiff getDiff() {
+        return diff;
+    }
+
+    @Override
+    public TreeDiff.Change getChange(NodeFigure figure) {
+        return diff.getChange(figure.getASTNode());
+    }
+
+    @Override
+    public void materializeChildren(NodeFigure figure) {
+        IASTNode astNode = figure.getASTNode();
+        if (figure.isMaterialized() || diff.isBefore(astNode)) {
+            super.materializeChildren(figure);
+            return;
+        }
+        IASTNode[] children = astNode.getChildren();
+        if (children.length == 0) {
+            String text = astNode.getRawSignature();
+            if (diff.getChange(astNode) == TreeDiff.Change.UPDATED) {
+                text = diff.getMatch(astNode).getRawSignature() + " -> " + text;
+            }
+            figure.addChild(new NodeFigure(astNode, text, false));
+            figure.setMaterialized(true);
+            return;
+        }
+        List<List<IASTNode>> deleted = findDeletedChildren(astNode, children);
+        for (int i = 0; i <= children.length; i++) {
+            if (deleted != null && deleted.get(i) != null) {
+                for (IASTNode child : deleted.get(i)) {
+                    figure.addChild(new NodeFigure(child, child.getClass().getSimpleName(), true));
+                }
+            }
+            if (i < children.length) {
+                figure.addChild(new NodeFigure(children[i], children[i].getClass().getSimpleName(), true));
+            }
+        }
+        figure.setMaterialized(true);
+    }
+
+    /**
+     * Returns the deleted children of the old node matched to astNode, grouped
+     * by the index of the child they are shown before, or null if there are
+     * none.
+     */
+    private List<List<IASTNode>> findDeletedChildren(IASTNode astNode, IASTNode[] children) {
+        IASTNode match = diff.getMatch(astNode);
+        if (match == null) {
+            return null;
+        }
+        Map<IASTNode, Integer> indices = new IdentityHashMap<>(children.length);
+        for (int i = 0; i < children.length; i++) {
+            indices.put(children[i], i);
+        }
+        List<List<IASTNode>> deleted = null;
+        int anchor = 0;
+        for (IASTNode child : match.getChildren()) {
+            IASTNode childMatch = diff.getMatch(child);
+            Integer index = childMatch != null ? indices.get(childMatch) : null;
+            if (index != null) {
+                anchor = index + 1;
+            } else if (diff.getChange(child) == TreeDiff.Change.DELETED) {
+                if (deleted == null) {
+                    deleted = new ArrayList<>();
+                    for (int i = 0; i <= children.length; i++) {
+                        deleted.add(null);
+                    }
+                }
+                if (deleted.get(anchor) == null) {
+                    deleted.set(anchor, new ArrayList<IASTNode>());
+                }
+                deleted.get(anchor).add(child);
+            }
+        }
+        return deleted;
+    }
+}
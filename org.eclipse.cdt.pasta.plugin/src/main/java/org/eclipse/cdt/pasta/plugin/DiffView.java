@@ -0,0 +1,120 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.model.ITranslationUnit;
+import org.eclipse.cdt.ui.CUIPlugin;
+import org.eclipse.jface.action.Action;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.part.ViewPart;
+import org.eclipse.ui.progress.IWorkbenchSiteProgressService;
+
+/**
+ * Shows the structural differences between a baseline AST and the AST of the
+ * active editor. The baseline is taken from the active editor on request, so
+ * the editor can be compared with an earlier state of itself or with another
+ * file.
+ */
+public class DiffView extends ViewPart {
+
+    private ASTWidget treeView;
+    private Label status;
+    private IASTTranslationUnit baseline;
+    private DiffASTJob diffJob;
+
+    @Override
+    public void createPartControl(Composite parent) {
+        GridLayout layout = new GridLayout(1, false);
+        layout.marginWidth = 0;
+        layout.marginHeight = 0;
+        parent.setLayout(layout);
+        status = new Label(parent, SWT.NONE);
+        status.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        status.setText("No baseline");
+        treeView = new ASTWidget(parent);
+        treeView.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        treeView.showMessage("Set a baseline to compare the active editor with");
+        Action setBaseline = new Action("Set Baseline") {
+            @Override
+            public void run() {
+                parse(null);
+            }
+        };
+        setBaseline.setToolTipText("Use the AST of the active editor as baseline");
+        Action compare = new Action("Compare") {
+            @Override
+            public void run() {
+                if (baseline != null) {
+                    parse(baseline);
+                }
+            }
+        };
+        compare.setToolTipText("Compare the AST of the active editor with the baseline");
+        getViewSite().getActionBars().getToolBarManager().add(setBaseline);
+        getViewSite().getActionBars().getToolBarManager().add(compare);
+    }
+
+    private void parse(IASTTranslationUnit against) {
+        if (diffJob != null) {
+            diffJob.cancel();
+        }
+        final ITranslationUnit translationUnit = getActiveTranslationUnit();
+        if (translationUnit == null) {
+            treeView.showMessage("No C/C++ editor is active");
+            return;
+        }
+        treeView.showMessage("Parsing " + translationUnit.getElementName() + "...");
+        diffJob = new DiffASTJob(translationUnit, against, treeView, new DiffASTJob.Listener() {
+
+            @Override
+            public void parsed(IASTTranslationUnit ast, TreeDiff diff) {
+                if (diff == null) {
+                    baseline = ast;
+                    status.setText("Baseline: " + translationUnit.getElementName());
+                } else {
+                    status.setText(formatChanges(diff));
+                }
+                status.getParent().layout();
+            }
+        });
+        IWorkbenchSiteProgressService progressService = (IWorkbenchSiteProgressService) getSite().getService(IWorkbenchSiteProgressService.class);
+        progressService.schedule(diffJob);
+    }
+
+    private static String formatChanges(TreeDiff diff) {
+        StringBuilder text = new StringBuilder();
+        for (TreeDiff.Change change : TreeDiff.Change.values()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(diff.getCount(change)).append(' ').append(change.getLabel());
+        }
+        return text.toString();
+    }
+
+    private ITranslationUnit getActiveTranslationUnit() {
+        IWorkbenchPage page = CUIPlugin.getActivePage();
+        IEditorPart editor = page != null ? page.getActiveEditor() : null;
+        if (editor == null) {
+            return null;
+        }
+        return CUIPlugin.getDefault().getWorkingCopyManager().getWorkingCopy(editor.getEditorInput());
+    }
+
+    @Override
+    public void dispose() {
+        if (diffJob != null) {
+            diffJob.cancel();
+        }
+        baseline = null;
+        super.dispose();
+    }
+
+    @Override
+    public void setFocus() { }
+}
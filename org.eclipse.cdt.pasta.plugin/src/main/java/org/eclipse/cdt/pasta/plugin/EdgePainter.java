@@ -0,0 +1,63 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.List;
+
+import org.eclipse.swt.graphics.GC;
+
+/**
+ * Paints the arrow from a laid out {@link NodeFigure} to its parent. Kept
+ * apart from the {@link ASTWidget} so the edges can also be painted onto an
+ * offscreen GC.
+ */
+public final class EdgePainter {
+
+    private static final double BARB_ANGLE = Math.toRadians(20);
+    private static final int BARB_LENGTH = 10;
+
+    private EdgePainter() {
+    }
+
+    /**
+     * Draws the edge from the top of figure to the bottom of its parent,
+     * shifted horizontally by originX.
+     */
+    public static void paintEdge(GC gc, NodeFigure figure, int originX) {
+        NodeFigure parent = figure.getParent();
+        int parentX = parent.getX() + parent.getWidth() / 2 + originX;
+        int parentY = parent.getY() + parent.getHeight();
+        int nodeX = figure.getX() + figure.getWidth() / 2 + originX;
+        int nodeY = figure.getY();
+        gc.drawLine(nodeX, nodeY, parentX, parentY);
+        paintArrowHead(gc, nodeX, nodeY, parentX, parentY);
+    }
+
+    /**
+     * Draws the edges from parent to all its visible children as one line
+     * down to half the distance to the children and one line spanning from
+     * the first to the last child, for drawing at low detail.
+     */
+    public static void paintChildBus(GC gc, NodeFigure parent, int originX) {
+        List<NodeFigure> children = parent.getVisibleChildren();
+        if (children.isEmpty()) {
+            return;
+        }
+        NodeFigure first = children.get(0);
+        NodeFigure last = children.get(children.size() - 1);
+        int parentX = parent.getX() + parent.getWidth() / 2 + originX;
+        int parentY = parent.getY() + parent.getHeight();
+        int busY = parentY + (first.getY() - parentY) / 2;
+        gc.drawLine(parentX, parentY, parentX, busY);
+        gc.drawLine(first.getX() + first.getWidth() / 2 + originX, busY, last.getX() + last.getWidth() / 2 + originX, busY);
+    }
+
+    private static void paintArrowHead(GC gc, double tipX, double tipY, double tailX, double tailY) {
+        double theta = Math.atan2(tipY - tailY, tipX - tailX);
+        double rho = theta + BARB_ANGLE;
+        for (int j = 0; j < 2; j++) {
+            double x = tipX - BARB_LENGTH * Math.cos(rho);
+            double y = tipY - BARB_LENGTH * Math.sin(rho);
+            gc.drawLine((int) tipX, (int) tipY, (int) x, (int) y);
+            rho = theta - BARB_ANGLE;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+
+/**
+ * Maps many offset ranges of the translation unit file to their innermost
+ * enclosing AST nodes at once. The ranges are sorted by start offset and the
+ * AST is traversed a single time, descending only into nodes that contain the
+ * start of at least one requested range. This replaces one
+ * {@code IASTNodeSelector.findEnclosingNode} call, each walking the AST, per
+ * range.
+ */
+public class EnclosingNodeResolver {
+
+    private final IASTTranslationUnit ast;
+    private final List<int[]> ranges = new ArrayList<>();
+
+    public EnclosingNodeResolver(IASTTranslationUnit ast) {
+        this.ast = ast;
+    }
+
+    /**
+     * Requests the enclosing node of a range and returns the index of its
+     * result in the array returned by {@link #resolve()}.
+     */
+    public int add(int offset, int length) {
+        ranges.add(new int[] { offset, offset + length, ranges.size() });
+        return ranges.size() - 1;
+    }
+
+    /**
+     * Returns the innermost node of the translation unit file enclosing each
+     * requested range, or null where no node encloses it.
+     */
+    public IASTNode[] resolve() {
+        final int[][] sorted = ranges.toArray(new int[ranges.size()][]);
+        Arrays.sort(sorted, new Comparator<int[]>() {
+
+            @Override
+            public int compare(int[] r1, int[] r2) {
+                return r1[0] < r2[0] ? -1 : (r1[0] == r2[0] ? 0 : 1);
+            }
+        });
+        int[] starts = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            starts[i] = sorted[i][0];
+        }
+        IASTNode[] result = new IASTNode[sorted.length];
+        int[] resultDepths = new int[sorted.length];
+        Arrays.fill(resultDepths, -1);
+        Deque<IASTNode> pending = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        pending.push(ast);
+        depths.push(0);
+        while (!pending.isEmpty()) {
+            IASTNode node = pending.pop();
+            int depth = depths.pop();
+            IASTFileLocation location = node.getFileLocation();
+            if (location != null) {
+                if (!node.isPartOfTranslationUnitFile()) {
+                    continue;
+                }
+                int start = location.getNodeOffset();
+                int end = start + location.getNodeLength();
+                int first = lowerBound(starts, start);
+                if (first == starts.length || starts[first] > end) {
+                    continue;
+                }
+                for (int i = first; i < starts.length && starts[i] <= end; i++) {
+                    if (sorted[i][1] <= end && depth > resultDepths[sorted[i][2]]) {
+                        result[sorted[i][2]] = node;
+                        resultDepths[sorted[i][2]] = depth;
+                    }
+                }
+            }
+            for (IASTNode child : node.getChildren()) {
+                pending.push(child);
+                depths.push(depth + 1);
+            }
+        }
+        return result;
+    }
+
+    private static int lowerBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,85 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.File;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.index.IIndexManager;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * Exports the ASTs of a project in the workspace without a workbench, e.g.
+ * for continuous integration:
+ * 
+ * <pre>
+ * eclipse -nosplash -data &lt;workspace&gt; -application org.eclipse.cdt.pasta.plugin.exportASTs
+ *     -project &lt;name&gt; -output &lt;file&gt; [-noBindings]
+ * </pre>
+ * 
+ * The format is chosen by the extension of the output file as in
+ * {@link ExportProjectJob#formatOf(String)}. The indexer is joined first, so
+ * bindings are resolved against a complete index. Exits with 0 if all files
+ * were exported, 1 if some could not be parsed and 2 on errors.
+ */
+public class ExportApplication implements IApplication {
+
+    private static final Integer EXIT_WARNING = 1;
+    private static final Integer EXIT_ERROR = 2;
+
+    @Override
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        String projectName = null;
+        String output = null;
+        boolean includeBindings = true;
+        for (int i = 0; i < args.length; i++) {
+            if ("-project".equals(args[i]) && i + 1 < args.length) {
+                projectName = args[++i];
+            } else if ("-output".equals(args[i]) && i + 1 < args.length) {
+                output = args[++i];
+            } else if ("-noBindings".equals(args[i])) {
+                includeBindings = false;
+            }
+        }
+        if (projectName == null || output == null) {
+            System.err.println("Usage: -project <name> -output <file> [-noBindings]");
+            return EXIT_ERROR;
+        }
+        IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
+        ICProject cProject = project.isOpen() ? CoreModel.getDefault().create(project) : null;
+        if (cProject == null || !cProject.exists()) {
+            System.err.println("No open C/C++ project " + projectName + " in the workspace");
+            return EXIT_ERROR;
+        }
+        CCorePlugin.getIndexManager().joinIndexer(IIndexManager.FOREVER, new NullProgressMonitor());
+        ExportProjectJob job = new ExportProjectJob(cProject, new File(output), ExportProjectJob.formatOf(output), includeBindings);
+        job.setUser(false);
+        job.schedule();
+        job.join();
+        IStatus result = job.getResult();
+        report(result);
+        if (result.getSeverity() == IStatus.ERROR || result.getSeverity() == IStatus.CANCEL) {
+            return EXIT_ERROR;
+        }
+        return result.getSeverity() == IStatus.WARNING ? EXIT_WARNING : EXIT_OK;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    private static void report(IStatus status) {
+        if (!status.isOK()) {
+            System.err.println(status.getMessage() + (status.getException() != null ? ": " + status.getException() : ""));
+        }
+        for (IStatus child : status.getChildren()) {
+            report(child);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.File;
+
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+/**
+ * Asks for an output file and starts an {@link ExportProjectJob} for the
+ * selected C/C++ project. The format is chosen by the file extension.
+ */
+public class ExportProjectHandler extends AbstractHandler {
+
+    @Override
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        Shell shell = HandlerUtil.getActiveShell(event);
+        ICProject project = AnalyzeProjectHandler.getSelectedProject(HandlerUtil.getCurrentSelection(event));
+        if (project == null) {
+            MessageDialog.openInformation(shell, "Export ASTs", "Please select a C/C++ project.");
+            return null;
+        }
+        FileDialog dialog = new FileDialog(shell, SWT.SAVE);
+        dialog.setText("Export ASTs");
+        dialog.setFilterExtensions(new String[] { "*.jsonl", "*.past", "*.*" });
+        dialog.setFileName(project.getElementName() + "-asts.jsonl");
+        dialog.setOverwrite(true);
+        String path = dialog.open();
+        if (path != null) {
+            new ExportProjectJob(project, new File(path), ExportProjectJob.formatOf(path), true).schedule();
+        }
+        return null;
+    }
+}
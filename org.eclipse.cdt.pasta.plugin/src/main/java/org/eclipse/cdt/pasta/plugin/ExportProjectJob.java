@@ -0,0 +1,96 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.cdt.core.model.ITranslationUnit;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Exports the ASTs of all source files of a C/C++ project to one file with
+ * an {@link ASTExporter}, one translation unit after the other. JSON exports
+ * are written one per line. Binary exports are concatenated, each with its
+ * own header. Files that cannot be parsed are skipped and reported in the
+ * result status.
+ */
+public class ExportProjectJob extends Job {
+
+    private final ICProject project;
+    private final File outputFile;
+    private final ASTExporter exporter;
+
+    public ExportProjectJob(ICProject project, File outputFile, ASTExporter.Format format, boolean includeBindings) {
+        super("Exporting ASTs of " + project.getElementName());
+        this.project = project;
+        this.outputFile = outputFile;
+        this.exporter = new ASTExporter(format, includeBindings);
+    }
+
+    /**
+     * Returns the format matching the extension of a file name: ".past" for
+     * {@link ASTExporter.Format#BINARY}, JSON otherwise.
+     */
+    public static ASTExporter.Format formatOf(String fileName) {
+        return fileName.endsWith(".past") ? ASTExporter.Format.BINARY : ASTExporter.Format.JSON;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        MultiStatus result = new MultiStatus(PastaPlugin.PLUGIN_ID, 0, "Exported ASTs of " + project.getElementName(), null);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            List<ITranslationUnit> translationUnits = ProjectAnalysis.getSourceUnits(project);
+            monitor.beginTask(getName(), translationUnits.size());
+            IIndex index = CCorePlugin.getIndexManager().getIndex(project);
+            for (ITranslationUnit translationUnit : translationUnits) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                monitor.subTask(translationUnit.getElementName());
+                IStatus status = export(translationUnit, index, out);
+                if (status != null) {
+                    result.add(status);
+                }
+                monitor.worked(1);
+            }
+            return result;
+        } catch (IOException e) {
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not write " + outputFile, e);
+        } catch (CoreException e) {
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not export " + project.getElementName(), e);
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            monitor.done();
+        }
+    }
+
+    private IStatus export(ITranslationUnit translationUnit, IIndex index, OutputStream out) throws IOException, InterruptedException {
+        String path = translationUnit.getPath().toString();
+        index.acquireReadLock();
+        try {
+            IASTTranslationUnit ast = translationUnit.getAST(index, ITranslationUnit.AST_SKIP_INDEXED_HEADERS);
+            if (ast == null) {
+                return new Status(IStatus.WARNING, PastaPlugin.PLUGIN_ID, "No AST for " + path);
+            }
+            exporter.export(ast, out);
+            return null;
+        } catch (CoreException e) {
+            return new Status(IStatus.WARNING, PastaPlugin.PLUGIN_ID, "Could not parse " + path, e);
+        } finally {
+            index.releaseReadLock();
+        }
+    }
+}
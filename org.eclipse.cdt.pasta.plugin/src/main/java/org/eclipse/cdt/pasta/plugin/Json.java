@@ -0,0 +1,51 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Helpers for writing JSON by hand to a {@link Writer}.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Writes the value as a quoted and escaped JSON string, or null.
+     */
+    public static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                writer.write("\\\"");
+                break;
+            case '\\':
+                writer.write("\\\\");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            case '\r':
+                writer.write("\\r");
+                break;
+            case '\t':
+                writer.write("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    writer.write(String.format("\\u%04x", (int) c));
+                } else {
+                    writer.write(c);
+                }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,20 @@
+package org.eclipse.cdt.pasta.plugin;
+
+/**
+ * Receives the measurements of a {@link ViewMetrics}. Listeners are either
+ * added to the metrics directly or registered as OSGi services, in which case
+ * every {@link ASTView} reports to them.
+ */
+public interface MetricsListener {
+
+    /**
+     * Called on the thread that ran the phase. allocatedBytes is -1 if the VM
+     * does not report allocations per thread.
+     */
+    void phaseFinished(ViewMetrics metrics, ViewMetrics.Phase phase, long nanos, long allocatedBytes);
+
+    /**
+     * Called on the UI thread after a new tree has been shown.
+     */
+    void treeShown(ViewMetrics metrics);
+}
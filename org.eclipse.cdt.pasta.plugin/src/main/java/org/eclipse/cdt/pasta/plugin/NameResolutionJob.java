@@ -0,0 +1,275 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTImplicitName;
+import org.eclipse.cdt.core.dom.ast.IASTImplicitNameOwner;
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.IBinding;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.index.IIndexName;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Resolves the binding of a name and looks up its declarations, definitions
+ * and references, or the bindings of the implicit names of a node, in the
+ * background while holding the index read lock. The rows of the binding are
+ * loaded completely before they are handed over, so the widget never reads
+ * index bindings without the lock. Result rows are handed to the
+ * {@link NodeWidget} in batches on the UI thread. At most limit rows are
+ * produced per section, starting at a given offset, the widget offers to load
+ * the remaining ones with another job.
+ */
+public class NameResolutionJob extends Job {
+
+    public enum Section {
+        DECLARATIONS("declaration"), DEFINITIONS("definition"), REFERENCES("reference"), IMPLICIT_NAMES(null);
+
+        private final String label;
+
+        private Section(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final int BATCH_SIZE = 50;
+    private static final String UNRESOLVED = "unresolved";
+
+    private final NodeWidget widget;
+    private final Display display;
+    private final IASTNode node;
+    private final PropertyNode bindingRow;
+    private final Map<Section, PropertyNode> sections;
+    private final int start;
+    private final int limit;
+
+    /**
+     * @param bindingRow
+     *            row to show the resolved binding in, or null if the binding
+     *            is already shown
+     * @param sections
+     *            the sections to fill, all starting at the same offset
+     */
+    public NameResolutionJob(NodeWidget widget, IASTNode node, PropertyNode bindingRow, Map<Section, PropertyNode> sections, int start, int limit) {
+        super("Resolving " + node.getClass().getSimpleName());
+        this.widget = widget;
+        this.display = widget.getDisplay();
+        this.node = node;
+        this.bindingRow = bindingRow;
+        this.sections = new EnumMap<>(sections);
+        this.start = start;
+        this.limit = limit;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        monitor.beginTask(getName(), sections.size());
+        IIndex index = node.getTranslationUnit().getIndex();
+        List<PropertyNode> pending = new ArrayList<>(sections.values());
+        if (bindingRow != null) {
+            pending.add(bindingRow);
+        }
+        try {
+            if (index != null) {
+                index.acquireReadLock();
+            }
+            try {
+                IBinding binding = node instanceof IASTName ? ((IASTName) node).resolveBinding() : null;
+                if (bindingRow != null) {
+                    showBinding(monitor, binding);
+                    pending.remove(bindingRow);
+                }
+                for (Map.Entry<Section, PropertyNode> entry : sections.entrySet()) {
+                    if (monitor.isCanceled()) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    if (binding == null && entry.getKey() != Section.IMPLICIT_NAMES) {
+                        showStatus(monitor, entry.getValue(), UNRESOLVED);
+                    } else {
+                        Object[] items = find(entry.getKey(), index, binding);
+                        stream(monitor, entry.getKey(), entry.getValue(), items);
+                    }
+                    pending.remove(entry.getValue());
+                    monitor.worked(1);
+                }
+            } finally {
+                if (index != null) {
+                    index.releaseReadLock();
+                }
+            }
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        } catch (CoreException e) {
+            for (PropertyNode row : pending) {
+                showStatus(monitor, row, "error: " + e.getMessage());
+            }
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not resolve " + node, e);
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            monitor.done();
+        }
+    }
+
+    /**
+     * Loads the rows of the binding, including all values, so the widget
+     * never reads the binding without the index lock.
+     */
+    private void showBinding(IProgressMonitor monitor, IBinding binding) {
+        if (binding == null) {
+            showStatus(monitor, bindingRow, UNRESOLVED);
+            return;
+        }
+        final String name = binding.getName();
+        final List<PropertyNode> rows = PropertyRows.bindingRows(binding);
+        for (PropertyNode row : rows) {
+            row.load();
+        }
+        updateWidget(monitor, new Runnable() {
+
+            @Override
+            public void run() {
+                widget.showBinding(bindingRow, name, rows);
+            }
+        });
+    }
+
+    private void showStatus(IProgressMonitor monitor, final PropertyNode row, final String status) {
+        updateWidget(monitor, new Runnable() {
+
+            @Override
+            public void run() {
+                widget.showStatus(row, status);
+            }
+        });
+    }
+
+    private Object[] find(Section section, IIndex index, IBinding binding) throws CoreException {
+        if (section == Section.IMPLICIT_NAMES) {
+            return node instanceof IASTImplicitNameOwner ? ((IASTImplicitNameOwner) node).getImplicitNames() : new Object[0];
+        }
+        if (index == null || binding == null) {
+            return new Object[0];
+        }
+        switch (section) {
+        case DECLARATIONS:
+            return index.findDeclarations(binding);
+        case DEFINITIONS:
+            return index.findDefinitions(binding);
+        default:
+            return index.findReferences(binding);
+        }
+    }
+
+    private void stream(IProgressMonitor monitor, Section section, PropertyNode row, Object[] items) throws CoreException {
+        int end = Math.min(items.length, start + limit);
+        IASTNode[] enclosingNodes = findEnclosingNodes(section, items, end);
+        List<PropertyNode> batch = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            batch.add(createRow(section, items[i], enclosingNodes[i - start]));
+            if (batch.size() == BATCH_SIZE) {
+                append(monitor, row, batch);
+                batch = new ArrayList<>();
+            }
+        }
+        append(monitor, row, batch);
+        final PropertyNode sectionRow = row;
+        final Section finishedSection = section;
+        final int total = items.length;
+        final int next = end;
+        updateWidget(monitor, new Runnable() {
+
+            @Override
+            public void run() {
+                widget.finishSection(node, finishedSection, sectionRow, total, next);
+            }
+        });
+    }
+
+    /**
+     * Resolves the enclosing AST nodes of the definitions or references
+     * between start and end that are located in the file of the AST.
+     */
+    private IASTNode[] findEnclosingNodes(Section section, Object[] items, int end) {
+        IASTNode[] enclosingNodes = new IASTNode[Math.max(0, end - start)];
+        if (section != Section.DEFINITIONS && section != Section.REFERENCES) {
+            return enclosingNodes;
+        }
+        IASTTranslationUnit ast = node.getTranslationUnit();
+        EnclosingNodeResolver resolver = new EnclosingNodeResolver(ast);
+        int[] requests = new int[enclosingNodes.length];
+        for (int i = start; i < end; i++) {
+            IASTFileLocation location = ((IIndexName) items[i]).getFileLocation();
+            if (location != null && ast.getFilePath().equals(location.getFileName())) {
+                requests[i - start] = resolver.add(location.getNodeOffset(), location.getNodeLength());
+            } else {
+                requests[i - start] = -1;
+            }
+        }
+        IASTNode[] resolved = resolver.resolve();
+        for (int i = 0; i < requests.length; i++) {
+            if (requests[i] >= 0) {
+                enclosingNodes[i] = resolved[requests[i]];
+            }
+        }
+        return enclosingNodes;
+    }
+
+    private PropertyNode createRow(Section section, Object item, IASTNode enclosingNode) throws CoreException {
+        switch (section) {
+        case IMPLICIT_NAMES:
+            IASTImplicitName implicitName = (IASTImplicitName) item;
+            IBinding binding = implicitName.resolveBinding();
+            return new PropertyNode(binding != null ? binding.getName() : implicitName.toString(), "");
+        case DECLARATIONS:
+            return new PropertyNode(section.label, String.valueOf(((IIndexName) item).getEnclosingDefinition()));
+        default:
+            if (enclosingNode != null) {
+                return new PropertyNode(section.label, String.valueOf(enclosingNode));
+            }
+            IASTFileLocation location = ((IIndexName) item).getFileLocation();
+            return new PropertyNode(section.label, location != null ? location.getFileName() + ":" + location.getNodeOffset() : "");
+        }
+    }
+
+    private void append(IProgressMonitor monitor, final PropertyNode row, final List<PropertyNode> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        updateWidget(monitor, new Runnable() {
+
+            @Override
+            public void run() {
+                widget.appendRows(row, batch);
+            }
+        });
+    }
+
+    private void updateWidget(final IProgressMonitor monitor, final Runnable update) {
+        if (display.isDisposed()) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!monitor.isCanceled() && !widget.isDisposed()) {
+                    update.run();
+                }
+            }
+        });
+    }
+}
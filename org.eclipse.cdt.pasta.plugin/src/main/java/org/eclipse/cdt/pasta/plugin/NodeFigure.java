@@ -0,0 +1,180 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * Lightweight model object for a single box of the AST graph. Figures hold no
+ * native resources, they are painted directly onto the canvas of the
+ * {@link ASTWidget}. Bounds are in layout coordinates, see {@link TreeLayout}.
+ */
+public class NodeFigure {
+
+    private IASTNode astNode;
+    private final String text;
+    private final boolean enabled;
+    private NodeFigure parent;
+    private final List<NodeFigure> children = new ArrayList<>(0);
+    private List<NodeFigure> filteredChildren;
+    private int depth;
+    private boolean expanded;
+    private boolean materialized;
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+
+    // slot in the CompactTree that lays the figure out
+    int slot = -1;
+
+    public NodeFigure(IASTNode astNode, String text, boolean enabled) {
+        this.astNode = astNode;
+        this.text = text;
+        this.enabled = enabled;
+    }
+
+    public IASTNode getASTNode() {
+        return astNode;
+    }
+
+    /**
+     * Binds the figure to the corresponding node of a newer AST of the same
+     * file, see {@link ViewTree#adopt(ViewTree)}.
+     */
+    void rebind(IASTNode astNode) {
+        this.astNode = astNode;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public NodeFigure getParent() {
+        return parent;
+    }
+
+    public List<NodeFigure> getChildren() {
+        return children;
+    }
+
+    /**
+     * Returns the children that are shown, i.e. all children, or the filtered
+     * children if a filter is set, if this figure is expanded and none
+     * otherwise.
+     */
+    public List<NodeFigure> getVisibleChildren() {
+        if (!expanded) {
+            return Collections.<NodeFigure> emptyList();
+        }
+        return filteredChildren != null ? filteredChildren : children;
+    }
+
+    /**
+     * Restricts the visible children to the given subset, or shows all
+     * children again if null.
+     */
+    public void setFilteredChildren(List<NodeFigure> filteredChildren) {
+        this.filteredChildren = filteredChildren;
+    }
+
+    public void addChild(NodeFigure child) {
+        child.parent = this;
+        child.depth = depth + 1;
+        children.add(child);
+    }
+
+    /**
+     * Replaces the children, detaching those that are not among the new ones.
+     */
+    void setChildren(List<NodeFigure> newChildren) {
+        for (NodeFigure child : children) {
+            child.parent = null;
+        }
+        children.clear();
+        for (NodeFigure child : newChildren) {
+            addChild(child);
+        }
+    }
+
+    /**
+     * Returns whether the figure is part of the tree below root.
+     */
+    public boolean isAttachedTo(NodeFigure root) {
+        NodeFigure current = this;
+        while (current.parent != null) {
+            current = current.parent;
+        }
+        return current == root;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    public void setExpanded(boolean expanded) {
+        this.expanded = expanded;
+    }
+
+    /**
+     * Returns whether the child figures of this figure have been created. Children
+     * are only built the first time a figure gets expanded.
+     */
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    public void setMaterialized(boolean materialized) {
+        this.materialized = materialized;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public void setBounds(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public Rectangle getBounds() {
+        return new Rectangle(x, y, width, height);
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean contains(int px, int py) {
+        return px >= x && py >= y && px < x + width && py < y + height;
+    }
+
+    public boolean intersects(Rectangle area) {
+        return x < area.x + area.width && area.x < x + width && y < area.y + area.height && area.y < y + height;
+    }
+}
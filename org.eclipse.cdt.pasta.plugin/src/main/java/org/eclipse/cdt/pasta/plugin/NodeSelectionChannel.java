@@ -0,0 +1,95 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.swt.widgets.Display;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Carries node selections from the {@link ASTView} to the {@link NodeView}
+ * over the OSGi event admin. Events are posted asynchronously and subscribers
+ * are notified on the UI thread. Selections that arrive while a notification
+ * is still pending replace the pending node, so a listener only ever sees the
+ * latest one. Every view owns a channel and closes it when it is disposed.
+ */
+public class NodeSelectionChannel {
+
+    public static final String TOPIC = "ASTNODE";
+    public static final String NODE_PROPERTY = "ASTNODE";
+
+    private final BundleContext context;
+    private final ServiceTracker<EventAdmin, EventAdmin> eventAdmin;
+    private final List<ServiceRegistration<EventHandler>> registrations = new ArrayList<>();
+
+    public NodeSelectionChannel() {
+        context = FrameworkUtil.getBundle(NodeSelectionChannel.class).getBundleContext();
+        eventAdmin = new ServiceTracker<>(context, EventAdmin.class, null);
+        eventAdmin.open();
+    }
+
+    public void publish(IASTNode node) {
+        EventAdmin admin = eventAdmin.getService();
+        if (admin != null) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(NODE_PROPERTY, node);
+            admin.postEvent(new Event(TOPIC, properties));
+        }
+    }
+
+    /**
+     * Notifies the listener on the UI thread of display about the latest
+     * selected node, until the channel is closed.
+     */
+    public void subscribe(final Display display, final NodeSelectionListener listener) {
+        final AtomicReference<IASTNode> pending = new AtomicReference<>();
+        final Runnable notification = new Runnable() {
+
+            @Override
+            public void run() {
+                IASTNode node = pending.getAndSet(null);
+                if (node != null) {
+                    listener.nodeSelected(node);
+                }
+            }
+        };
+        EventHandler handler = new EventHandler() {
+
+            @Override
+            public void handleEvent(Event event) {
+                IASTNode node = (IASTNode) event.getProperty(NODE_PROPERTY);
+                if (node != null && pending.getAndSet(node) == null && !display.isDisposed()) {
+                    display.asyncExec(notification);
+                }
+            }
+        };
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(EventConstants.EVENT_TOPIC, TOPIC);
+        registrations.add(context.registerService(EventHandler.class, handler, properties));
+    }
+
+    public void close() {
+        for (ServiceRegistration<EventHandler> registration : registrations) {
+            try {
+                registration.unregister();
+            } catch (IllegalStateException e) {
+                // already unregistered when the bundle stopped
+            }
+        }
+        registrations.clear();
+        eventAdmin.close();
+    }
+}
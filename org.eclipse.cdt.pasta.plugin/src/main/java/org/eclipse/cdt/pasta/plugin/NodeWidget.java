@@ -1,33 +1,43 @@
 package org.eclipse.cdt.pasta.plugin;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.eclipse.cdt.core.dom.ast.IASTImplicitName;
 import org.eclipse.cdt.core.dom.ast.IASTImplicitNameOwner;
 import org.eclipse.cdt.core.dom.ast.IASTName;
 import org.eclipse.cdt.core.dom.ast.IASTNode;
-import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
-import org.eclipse.cdt.core.dom.ast.IBinding;
-import org.eclipse.cdt.core.dom.ast.IType;
-import org.eclipse.cdt.core.index.IIndex;
-import org.eclipse.cdt.core.index.IIndexName;
-import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTNameBase;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeColumn;
 import org.eclipse.swt.widgets.TreeItem;
 
-@SuppressWarnings("restriction")
+/**
+ * Property inspector for a single AST node. The tree is virtual: rows are
+ * created from {@link PropertyNode}s only when they become visible, so field
+ * values are converted to strings only for the rows that are actually shown.
+ * Bindings, index lookups and implicit names are resolved by a
+ * {@link NameResolutionJob} and streamed into the tree as they arrive.
+ */
 public class NodeWidget extends Composite {
 
+    public static final int DEFAULT_RESULT_LIMIT = 200;
+
     private Tree tree;
+    private List<PropertyNode> rows = new ArrayList<>();
+    private final Map<PropertyNode, TreeItem> items = new HashMap<>();
+    private final List<Job> jobs = new ArrayList<>();
+    private int resultLimit = DEFAULT_RESULT_LIMIT;
 
     public NodeWidget(Composite parent) {
         super(parent, SWT.NONE);
@@ -37,7 +47,7 @@ public class NodeWidget extends Composite {
     private void init() {
         this.setLayout(new FillLayout());
         this.setBackground(this.getDisplay().getSystemColor(SWT.COLOR_WHITE));
-        tree = new Tree(this, SWT.BORDER | SWT.H_SCROLL | SWT.V_SCROLL);
+        tree = new Tree(this, SWT.BORDER | SWT.H_SCROLL | SWT.V_SCROLL | SWT.VIRTUAL);
         tree.setLayout(new FillLayout());
         tree.setHeaderVisible(true);
         tree.setBounds(getParent().getClientArea());
@@ -47,182 +57,162 @@ public class NodeWidget extends Composite {
         TreeColumn valueCol = new TreeColumn(tree, SWT.LEFT);
         valueCol.setText("Value");
         valueCol.setWidth(200);
-        tree.setVisible(true);
-    }
+        tree.addListener(SWT.SetData, new Listener() {
 
-    public void displayNode(IASTNode node) {
-        clearTree();
-        displayName(node);
-        displayBindings(node);
-        displayImplicitNames(node);
-        TreeItem typeHierarchy = createTreeItem(tree, "Type Hierarchy;");
-        displayTypeHierarchy(typeHierarchy, node);
-        TreeItem fields = createTreeItem(tree, "Fields;");
-        displayFields(fields, node);
-        TreeItem methods = createTreeItem(tree, "Methods;");
-        displayMethods(methods, node);
-        expandFirstLevel();
-    }
+            @Override
+            public void handleEvent(Event event) {
+                populateItem((TreeItem) event.item, event.index);
+            }
+        });
+        tree.addListener(SWT.DefaultSelection, new Listener() {
 
-    private void displayMethods(TreeItem parent, Object node) {
-        collectMethods(parent, node.getClass());
-    }
+            @Override
+            public void handleEvent(Event event) {
+                if (event.item != null && event.item.getData() instanceof MoreRow) {
+                    loadMore((TreeItem) event.item);
+                }
+            }
+        });
+        addDisposeListener(new DisposeListener() {
 
-    private void displayName(IASTNode node) {
-        createTreeItem(tree, node.getClass().getSimpleName() + ";");
+            @Override
+            public void widgetDisposed(DisposeEvent e) {
+                cancelJobs();
+            }
+        });
+        tree.setVisible(true);
     }
 
-    private void clearTree() {
-        for (TreeItem item : tree.getItems()) {
-            item.dispose();
-        }
+    /**
+     * Sets the maximum number of declarations, definitions, references or
+     * implicit names that are loaded at once.
+     */
+    public void setResultLimit(int resultLimit) {
+        this.resultLimit = resultLimit;
     }
 
-	private void displayFields(TreeItem parent, Object node) {
-        List<Field> fields = new ArrayList<>(Arrays.asList(node.getClass().getFields()));
-        fields.addAll(Arrays.asList(node.getClass().getDeclaredFields()));
-        for (Field field : fields) {
-            makeAccessible(field);
-            Object fieldValue = getValue(field, node);
-            if (!(fieldValue instanceof CPPASTNameBase)) { // workaround for CPPASTNameBase.toString() NPE
-                createTreeItem(parent, field.getName() + ";" + getValue(field, node));
-            }
+    public void displayNode(IASTNode node) {
+        cancelJobs();
+        items.clear();
+        List<PropertyNode> newRows = new ArrayList<>();
+        newRows.add(new PropertyNode(node.getClass().getSimpleName(), ""));
+        Map<NameResolutionJob.Section, PropertyNode> sections = new EnumMap<>(NameResolutionJob.Section.class);
+        PropertyNode bindingRow = null;
+        if (node instanceof IASTName) {
+            bindingRow = new PropertyNode("Binding", "resolving...");
+            sections.put(NameResolutionJob.Section.DECLARATIONS, bindingRow.add(new PropertyNode("Declarations", "...")));
+            sections.put(NameResolutionJob.Section.DEFINITIONS, bindingRow.add(new PropertyNode("Definitions", "...")));
+            sections.put(NameResolutionJob.Section.REFERENCES, bindingRow.add(new PropertyNode("References", "...")));
+            newRows.add(bindingRow);
+        }
+        if (node instanceof IASTImplicitNameOwner) {
+            sections.put(NameResolutionJob.Section.IMPLICIT_NAMES, new PropertyNode("Implicit Names", "..."));
+            newRows.add(sections.get(NameResolutionJob.Section.IMPLICIT_NAMES));
+        }
+        PropertyNode typeHierarchy = new PropertyNode("Type Hierarchy", "");
+        PropertyRows.addTypeHierarchy(typeHierarchy, node);
+        newRows.add(typeHierarchy);
+        newRows.add(PropertyRows.fieldsRow(node));
+        newRows.add(PropertyRows.methodsRow(node));
+        rows = newRows;
+        tree.removeAll();
+        tree.setItemCount(rows.size());
+        if (!sections.isEmpty()) {
+            schedule(new NameResolutionJob(this, node, bindingRow, sections, 0, resultLimit));
         }
     }
 
-    private void displayTypeHierarchy(TreeItem parent, Object o) {
-        collectSuperclasses(parent, o.getClass());
-        parent.setExpanded(true);
+    /**
+     * Shows the name of a resolved binding and adds its rows, which were
+     * loaded by the job while it held the index lock.
+     */
+    public void showBinding(PropertyNode bindingRow, String name, List<PropertyNode> children) {
+        bindingRow.setValue(name);
+        bindingRow.getChildren().addAll(children);
+        updateItem(bindingRow);
     }
 
-    private void collectSuperclasses(TreeItem superClasses, Class<?> clazz) {
-        if (clazz == null) {
-            return;
-        }
-        TreeItem classItem = createTreeItem(superClasses, clazz.getSimpleName() + ";");
-        displayInterfaceHierarchy(classItem, clazz);
-        collectSuperclasses(classItem, clazz.getSuperclass());
+    /**
+     * Replaces the placeholder value of a row that could not be filled,
+     * e.g. because the binding is unresolved or the lookup failed.
+     */
+    public void showStatus(PropertyNode row, String status) {
+        row.setValue(status);
+        updateItem(row);
     }
 
-    private void displayInterfaceHierarchy(TreeItem classItem, Class<?> clazz) {
-        for (Class<?> interfaceClass : clazz.getInterfaces()) {
-            TreeItem interfaceItem = createTreeItem(classItem, interfaceClass.getSimpleName() + ";");
-            displayInterfaceHierarchy(interfaceItem, interfaceClass);
-        }
+    public void appendRows(PropertyNode row, List<PropertyNode> children) {
+        row.getChildren().addAll(children);
+        updateItem(row);
     }
 
-    private void collectMethods(TreeItem parentItem, Class<?> clazz) {
-        if (clazz == null) {
-            return;
-        }
-        for (Method method : clazz.getMethods()) {
-            if (Modifier.isPublic(method.getModifiers())) {
-                createTreeItem(parentItem, method.getName() + ";" + method.getReturnType().getSimpleName());
-            }
-        }
-    }
-    
-    private void displayImplicitNames(IASTNode node) {
-        if (node instanceof IASTImplicitNameOwner) {
-            IASTImplicitName[] implicitNames = ((IASTImplicitNameOwner) node).getImplicitNames();
-            TreeItem parent = createTreeItem(tree, "Implicit Names;"+implicitNames.length);
-            for (IASTImplicitName implicitName : implicitNames) {
-                createTreeItem(parent, implicitName.resolveBinding().getName()+";");
-            }
+    /**
+     * Shows the total number of results of a section and, if not all of them
+     * are loaded, a row to load the next ones starting at next.
+     */
+    public void finishSection(IASTNode node, NameResolutionJob.Section section, PropertyNode row, int total, int next) {
+        row.setValue(String.valueOf(total));
+        if (next < total) {
+            row.add(new MoreRow(node, section, next, total - next));
         }
+        updateItem(row);
     }
 
-    private void displayBindings(IASTNode node) {
-        try {
-            if (node instanceof IASTName) {
-                IASTTranslationUnit ast = node.getTranslationUnit();
-                TreeItem parent = createTreeItem(tree, "Binding;");
-                IBinding binding = ((IASTName) node).resolveBinding();
-                IIndex index = node.getTranslationUnit().getIndex();
-                for (IIndexName decl : index.findDeclarations(binding)) {
-                    createTreeItem(parent, "declaration;" + decl.getEnclosingDefinition());
-                }
-                for (IIndexName def : index.findDefinitions(binding)) {
-                    createTreeItem(parent, "definition;" + ast.getNodeSelector(null).findEnclosingNode(def.getNodeOffset(), def.getNodeLength()));
-                }
-                for (IIndexName ref : index.findReferences(binding)) {
-                    createTreeItem(parent, "reference;" +  ast.getNodeSelector(null).findEnclosingNode(ref.getNodeOffset(), ref.getNodeLength()));
-                }
-
-                displayTypeHierarchy(parent, binding);
-                
-                TreeItem fields = createTreeItem(parent, "Fields;");
-                displayFields(fields, binding);
-                
-                TreeItem methods = createTreeItem(parent, "Methods;");
-                displayMethods(methods, binding);
-                
-                displayBindingType(parent, binding);
-            }
-        } catch (Exception e) {
-            PastaPlugin.log(e);
-        }
+    private void loadMore(TreeItem item) {
+        MoreRow more = (MoreRow) item.getData();
+        PropertyNode section = (PropertyNode) item.getParentItem().getData();
+        section.getChildren().remove(more);
+        updateItem(section);
+        schedule(new NameResolutionJob(this, more.node, null, Collections.singletonMap(more.section, section), more.start, resultLimit));
     }
 
-    private void displayBindingType(TreeItem parent, IBinding binding) {
-		Class<?> cls = binding.getClass();
-		try {
-			Method typeGetter = cls.getMethod("getType");
-			IType type = (IType)typeGetter.invoke(binding);
-
-            TreeItem typeItem = createTreeItem(parent, "Type;");
-
-            displayTypeHierarchy(typeItem, type);
-            
-            TreeItem fields = createTreeItem(typeItem, "Fields;");
-            displayFields(fields, type);
-            
-            TreeItem methods = createTreeItem(typeItem, "Methods;");
-            displayMethods(methods, type);
-		} catch (Exception e) {
-			// seems there is no getType() method that returns an IType, that's ok
-		}
-	}
-
-	private void makeAccessible(Field field) {
-        try {
-            field.setAccessible(true);
-            Field modifierField = Field.class.getDeclaredField("modifiers");
-            modifierField.setAccessible(true);
-            modifierField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
-        } catch (Exception e) {
-            PastaPlugin.log(e);
+    private void updateItem(PropertyNode row) {
+        TreeItem item = items.get(row);
+        if (item != null && !item.isDisposed()) {
+            item.setText(1, row.getValue());
+            item.setItemCount(row.getChildren().size());
         }
     }
 
-    private void expandFirstLevel() {
-        for (TreeItem item : tree.getItems()) {
-            item.setExpanded(true);
-        }
+    private void schedule(Job job) {
+        jobs.add(job);
+        job.schedule();
     }
 
-    private Object getValue(Field field, Object node) {
-        try {
-            return field.get(node);
-        } catch (Throwable e) {
-            PastaPlugin.log(e);
-            return "error loading field value";
+    private void cancelJobs() {
+        for (Job job : jobs) {
+            job.cancel();
+        }
+        jobs.clear();
+    }
+
+    private void populateItem(TreeItem item, int index) {
+        TreeItem parentItem = item.getParentItem();
+        List<PropertyNode> siblings = parentItem == null ? rows : ((PropertyNode) parentItem.getData()).getChildren();
+        PropertyNode row = siblings.get(index);
+        item.setData(row);
+        items.put(row, item);
+        item.setText(new String[] { row.getName(), row.getValue() });
+        item.setItemCount(row.getChildren().size());
+        if (parentItem == null) {
+            item.setExpanded(true);
         }
     }
 
-    private TreeItem createTreeItem(Tree parent, String string) {
-        TreeItem treeItem = new TreeItem(parent, SWT.NONE);
-        return configureTreeItem(string, treeItem);
-    }
+    /**
+     * Placeholder for the results of a section that are not loaded yet.
+     */
+    private static class MoreRow extends PropertyNode {
 
-    private TreeItem createTreeItem(TreeItem parent, String content) {
-        TreeItem treeItem = new TreeItem(parent, SWT.NONE);
-        return configureTreeItem(content, treeItem);
-    }
+        private final IASTNode node;
+        private final NameResolutionJob.Section section;
+        private final int start;
 
-    private TreeItem configureTreeItem(String string, TreeItem treeItem) {
-        treeItem.setText(string.split(";"));
-        treeItem.setExpanded(true);
-        return treeItem;
+        MoreRow(IASTNode node, NameResolutionJob.Section section, int start, int remaining) {
+            super("load more...", remaining + " remaining");
+            this.node = node;
+            this.section = section;
+            this.start = start;
+        }
     }
 }
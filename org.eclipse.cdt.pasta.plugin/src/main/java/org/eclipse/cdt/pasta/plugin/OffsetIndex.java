@@ -0,0 +1,123 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable index over (mostly nested) offset ranges of a file, answering
+ * which is the innermost range containing a given offset.
+ * <p>
+ * The ranges are sorted by start offset, longer ranges first, and each range
+ * remembers the closest preceding range that contains it. A lookup is a binary
+ * search for the last range starting at or before the offset, followed by a
+ * walk to the first enclosing range that still covers the offset.
+ */
+public class OffsetIndex<T> {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] enclosing;
+    private final Object[] items;
+
+    private OffsetIndex(int[] starts, int[] ends, int[] enclosing, Object[] items) {
+        this.starts = starts;
+        this.ends = ends;
+        this.enclosing = enclosing;
+        this.items = items;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Returns the item of the innermost range with start &lt;= offset &lt;
+     * end, or null if no range covers the offset. Empty ranges cover their
+     * start offset.
+     */
+    @SuppressWarnings("unchecked")
+    public T findInnermost(int offset) {
+        int low = 0;
+        int high = starts.length - 1;
+        int candidate = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= offset) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while (candidate >= 0 && !covers(candidate, offset)) {
+            candidate = enclosing[candidate];
+        }
+        return candidate >= 0 ? (T) items[candidate] : null;
+    }
+
+    private boolean covers(int range, int offset) {
+        return offset < ends[range] || (offset == starts[range] && starts[range] == ends[range]);
+    }
+
+    public static class Builder<T> {
+
+        private final List<Range> ranges = new ArrayList<>();
+
+        public Builder<T> add(int offset, int length, T item) {
+            ranges.add(new Range(offset, offset + length, ranges.size(), item));
+            return this;
+        }
+
+        public OffsetIndex<T> build() {
+            Range[] sorted = ranges.toArray(new Range[ranges.size()]);
+            Arrays.sort(sorted, new Comparator<Range>() {
+
+                @Override
+                public int compare(Range r1, Range r2) {
+                    if (r1.start != r2.start) {
+                        return r1.start < r2.start ? -1 : 1;
+                    }
+                    if (r1.end != r2.end) {
+                        return r1.end > r2.end ? -1 : 1;
+                    }
+                    return r1.order < r2.order ? -1 : (r1.order == r2.order ? 0 : 1);
+                }
+            });
+            int[] starts = new int[sorted.length];
+            int[] ends = new int[sorted.length];
+            int[] enclosing = new int[sorted.length];
+            Object[] items = new Object[sorted.length];
+            int[] open = new int[sorted.length];
+            int depth = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                Range range = sorted[i];
+                while (depth > 0 && ends[open[depth - 1]] < range.end) {
+                    depth--;
+                }
+                starts[i] = range.start;
+                ends[i] = range.end;
+                items[i] = range.item;
+                enclosing[i] = depth > 0 ? open[depth - 1] : -1;
+                open[depth++] = i;
+            }
+            return new OffsetIndex<>(starts, ends, enclosing, items);
+        }
+    }
+
+    private static class Range {
+
+        private final int start;
+        private final int end;
+        private final int order;
+        private final Object item;
+
+        Range(int start, int end, int order, Object item) {
+            this.start = start;
+            this.end = end;
+            this.order = order;
+            this.item = item;
+        }
+    }
+}
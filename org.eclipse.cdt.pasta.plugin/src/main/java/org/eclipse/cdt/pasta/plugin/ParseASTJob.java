@@ -0,0 +1,123 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.model.ITranslationUnit;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Parses a translation unit and builds its {@link ViewTree} in the background.
+ * The finished tree is stored in the {@link ASTCache} and handed to the
+ * {@link ASTWidget} on the UI thread, unless the job has been cancelled in the
+ * meantime. In patch mode the widget updates the displayed tree in place and
+ * keeps showing it if parsing fails.
+ */
+public class ParseASTJob extends Job {
+
+    private final ITranslationUnit translationUnit;
+    private final long modificationStamp;
+    private final ASTCache cache;
+    private final ASTWidget widget;
+    private final ViewTree.Options options;
+    private final ViewMetrics metrics;
+    private final boolean patch;
+    private final Display display;
+    private long indexStamp = ASTCache.UNKNOWN_STAMP;
+
+    public ParseASTJob(ITranslationUnit translationUnit, long modificationStamp, ASTCache cache, ASTWidget widget, ViewTree.Options options, ViewMetrics metrics, boolean patch) {
+        super("Parsing " + translationUnit.getElementName());
+        this.translationUnit = translationUnit;
+        this.modificationStamp = modificationStamp;
+        this.cache = cache;
+        this.widget = widget;
+        this.options = options;
+        this.metrics = metrics;
+        this.patch = patch;
+        this.display = widget.getDisplay();
+    }
+
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        monitor.beginTask(getName(), 2);
+        try {
+            ViewMetrics.Timer parseTimer = metrics.start(ViewMetrics.Phase.PARSE);
+            IASTTranslationUnit ast = parse();
+            parseTimer.stop();
+            monitor.worked(1);
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            monitor.subTask("Building view tree");
+            ViewMetrics.Timer buildTimer = metrics.start(ViewMetrics.Phase.BUILD);
+            final ViewTree tree = new ViewTree(ast, options);
+            buildTimer.stop();
+            if (!patch) {
+                widget.prepareTree(tree);
+            }
+            monitor.worked(1);
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            cache.put(translationUnit, modificationStamp, indexStamp, tree);
+            updateWidget(monitor, new Runnable() {
+
+                @Override
+                public void run() {
+                    if (patch) {
+                        widget.patchTree(tree);
+                    } else {
+                        widget.drawTree(tree);
+                    }
+                }
+            });
+            return Status.OK_STATUS;
+        } catch (CoreException e) {
+            if (!patch) {
+                updateWidget(monitor, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        widget.showMessage("Could not parse " + translationUnit.getElementName());
+                    }
+                });
+            }
+            return new Status(IStatus.ERROR, PastaPlugin.PLUGIN_ID, "Could not parse " + translationUnit.getElementName(), e);
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            monitor.done();
+        }
+    }
+
+    private void updateWidget(final IProgressMonitor monitor, final Runnable update) {
+        if (display.isDisposed()) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!monitor.isCanceled() && !widget.isDisposed()) {
+                    update.run();
+                }
+            }
+        });
+    }
+
+    private IASTTranslationUnit parse() throws CoreException, InterruptedException {
+        IIndex index = CCorePlugin.getIndexManager().getIndex(translationUnit.getCProject());
+        index.acquireReadLock();
+        try {
+            indexStamp = index.getLastWriteAccess();
+            return translationUnit.getAST(index, ITranslationUnit.AST_SKIP_INDEXED_HEADERS);
+        } finally {
+            index.releaseReadLock();
+        }
+    }
+}
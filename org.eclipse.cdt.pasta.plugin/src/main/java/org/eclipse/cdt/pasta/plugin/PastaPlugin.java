@@ -80,6 +80,16 @@ public class PastaPlugin extends AbstractUIPlugin {
         log(new Status(IStatus.ERROR, PLUGIN_ID, 1, message, e));
     }
 
+    /**
+     * Logs an informational message, e.g. measurements.
+     * 
+     * @param message
+     *            the message to log
+     */
+    public static void logInfo(String message) {
+        log(new Status(IStatus.INFO, PLUGIN_ID, message));
+    }
+
     /**
      * Logs an internal error with the specified message.
      * 
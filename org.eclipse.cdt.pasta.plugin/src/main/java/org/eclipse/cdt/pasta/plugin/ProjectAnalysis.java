@@ -0,0 +1,209 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.model.ICContainer;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.cdt.core.model.ISourceRoot;
+import org.eclipse.cdt.core.model.ITranslationUnit;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Parses all source files in the source roots of a C/C++ project on a fixed number of worker
+ * threads and collects {@link ASTStatistics} for each of them. The workers
+ * share the project index and hold its read lock while parsing and
+ * analyzing a translation unit. Results are handed to a {@link Listener} on
+ * the calling thread in the order they complete, so a report can be written
+ * while the analysis is still running.
+ */
+public class ProjectAnalysis {
+
+    /**
+     * Milliseconds to wait for the next result before checking again whether
+     * the analysis was canceled.
+     */
+    private static final long CANCEL_POLL_INTERVAL = 100;
+
+    public interface Listener {
+
+        void analyzed(Result result);
+    }
+
+    private final ICProject project;
+    private final int threads;
+    private final boolean resolveBindings;
+
+    public ProjectAnalysis(ICProject project, int threads, boolean resolveBindings) {
+        this.project = project;
+        this.threads = threads;
+        this.resolveBindings = resolveBindings;
+    }
+
+    /**
+     * Analyzes all source files and returns the merged statistics of those
+     * that could be parsed.
+     */
+    public ASTStatistics run(Listener listener, final IProgressMonitor monitor) throws CoreException, InterruptedException {
+        List<ITranslationUnit> translationUnits = getSourceUnits(project);
+        monitor.beginTask("Analyzing " + project.getElementName(), translationUnits.size());
+        final IIndex index = CCorePlugin.getIndexManager().getIndex(project);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new WorkerFactory());
+        ASTStatistics total = new ASTStatistics();
+        try {
+            CompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+            for (final ITranslationUnit translationUnit : translationUnits) {
+                completion.submit(new Callable<Result>() {
+
+                    @Override
+                    public Result call() throws Exception {
+                        if (monitor.isCanceled()) {
+                            throw new InterruptedException();
+                        }
+                        return analyze(translationUnit, index);
+                    }
+                });
+            }
+            for (int i = 0; i < translationUnits.size(); i++) {
+                Future<Result> next;
+                do {
+                    if (monitor.isCanceled()) {
+                        throw new InterruptedException();
+                    }
+                    next = completion.poll(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                } while (next == null);
+                Result result = next.get();
+                if (result.getStatistics() != null) {
+                    total.merge(result.getStatistics());
+                }
+                listener.analyzed(result);
+                monitor.worked(1);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            monitor.done();
+        }
+        return total;
+    }
+
+    private Result analyze(ITranslationUnit translationUnit, IIndex index) throws InterruptedException {
+        String path = translationUnit.getPath().toString();
+        index.acquireReadLock();
+        try {
+            long start = System.nanoTime();
+            IASTTranslationUnit ast = translationUnit.getAST(index, ITranslationUnit.AST_SKIP_INDEXED_HEADERS);
+            long parsed = System.nanoTime();
+            if (ast == null) {
+                return new Result(path, null, parsed - start, 0, "No AST");
+            }
+            ASTStatistics statistics = new ASTStatistics();
+            statistics.collect(ast, resolveBindings);
+            return new Result(path, statistics, parsed - start, System.nanoTime() - parsed, null);
+        } catch (CoreException e) {
+            return new Result(path, null, 0, 0, e.getMessage());
+        } catch (RuntimeException e) {
+            PastaPlugin.log(e, "Could not analyze " + path);
+            return new Result(path, null, 0, 0, e.toString());
+        } finally {
+            index.releaseReadLock();
+        }
+    }
+
+    /**
+     * Returns the source units in the source roots of a project.
+     */
+    static List<ITranslationUnit> getSourceUnits(ICProject project) throws CoreException {
+        List<ITranslationUnit> translationUnits = new ArrayList<>();
+        for (ISourceRoot sourceRoot : project.getSourceRoots()) {
+            collectSourceUnits(sourceRoot, translationUnits);
+        }
+        return translationUnits;
+    }
+
+    /**
+     * Adds the source units of a source folder and its subfolders. Binary and
+     * archive containers are not source folders and are skipped.
+     */
+    private static void collectSourceUnits(ICContainer container, List<ITranslationUnit> translationUnits) throws CoreException {
+        for (ITranslationUnit translationUnit : container.getTranslationUnits()) {
+            if (translationUnit.isSourceUnit()) {
+                translationUnits.add(translationUnit);
+            }
+        }
+        for (ICContainer folder : container.getCContainers()) {
+            collectSourceUnits(folder, translationUnits);
+        }
+    }
+
+    /**
+     * The outcome of analyzing one translation unit. Times are in
+     * nanoseconds, statistics are null if the file could not be parsed.
+     */
+    public static class Result {
+
+        private final String path;
+        private final ASTStatistics statistics;
+        private final long parseTime;
+        private final long analysisTime;
+        private final String error;
+
+        Result(String path, ASTStatistics statistics, long parseTime, long analysisTime, String error) {
+            this.path = path;
+            this.statistics = statistics;
+            this.parseTime = parseTime;
+            this.analysisTime = analysisTime;
+            this.error = error;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public ASTStatistics getStatistics() {
+            return statistics;
+        }
+
+        public long getParseTime() {
+            return parseTime;
+        }
+
+        public long getAnalysisTime() {
+            return analysisTime;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pASTa project analysis " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
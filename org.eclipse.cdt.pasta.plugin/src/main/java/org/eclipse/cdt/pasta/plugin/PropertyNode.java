@@ -0,0 +1,105 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A row of the {@link NodeWidget} property tree. Value strings and children
+ * are computed on first access, which happens when the row is scrolled into
+ * view or its parent is expanded. Values longer than
+ * {@link #MAX_VALUE_LENGTH} characters are truncated.
+ */
+public class PropertyNode {
+
+    public static final int MAX_VALUE_LENGTH = 200;
+
+    private final String name;
+    private String value;
+    private List<PropertyNode> children;
+
+    public PropertyNode(String name) {
+        this(name, null);
+    }
+
+    public PropertyNode(String name, String value) {
+        this.name = name;
+        this.value = value != null ? truncate(value) : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        if (value == null) {
+            String computed;
+            try {
+                computed = String.valueOf(computeValue());
+            } catch (Throwable e) {
+                PastaPlugin.log(e);
+                computed = "error loading value";
+            }
+            value = truncate(computed);
+        }
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = truncate(value);
+    }
+
+    public List<PropertyNode> getChildren() {
+        if (children == null) {
+            children = new ArrayList<>();
+            try {
+                computeChildren(children);
+            } catch (Throwable e) {
+                PastaPlugin.log(e);
+            }
+        }
+        return children;
+    }
+
+    public PropertyNode add(PropertyNode child) {
+        getChildren().add(child);
+        return child;
+    }
+
+    /**
+     * Computes the values and children of this row and all rows below it,
+     * e.g. on a worker thread that holds a lock the values need.
+     */
+    public void load() {
+        Deque<PropertyNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            PropertyNode row = pending.pop();
+            row.getValue();
+            for (PropertyNode child : row.getChildren()) {
+                pending.push(child);
+            }
+        }
+    }
+
+    /**
+     * Computes the value shown next to the name, called at most once.
+     */
+    protected Object computeValue() {
+        return "";
+    }
+
+    /**
+     * Adds the children of this row, called at most once.
+     */
+    protected void computeChildren(List<PropertyNode> children) {
+    }
+
+    private static String truncate(String value) {
+        if (value.length() <= MAX_VALUE_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,101 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.IBinding;
+import org.eclipse.cdt.core.dom.ast.IType;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTNameBase;
+
+/**
+ * Creates the type hierarchy, fields and methods rows of the
+ * {@link NodeWidget} from the {@link ClassMetadata} of an object. The rows
+ * compute their values lazily, rows of index bindings must be loaded with
+ * {@link PropertyNode#load()} while the index is locked.
+ */
+@SuppressWarnings("restriction")
+public final class PropertyRows {
+
+    private PropertyRows() {
+    }
+
+    /**
+     * Returns the type hierarchy, fields, methods and type rows of a
+     * binding.
+     */
+    public static List<PropertyNode> bindingRows(IBinding binding) {
+        PropertyNode holder = new PropertyNode("", "");
+        addTypeHierarchy(holder, binding);
+        List<PropertyNode> rows = new ArrayList<>(holder.getChildren());
+        rows.add(fieldsRow(binding));
+        rows.add(methodsRow(binding));
+        PropertyNode type = bindingTypeRow(binding);
+        if (type != null) {
+            rows.add(type);
+        }
+        return rows;
+    }
+
+    public static void addTypeHierarchy(PropertyNode parent, Object o) {
+        List<PropertyNode> levels = new ArrayList<>();
+        levels.add(parent);
+        for (ClassMetadata.HierarchyEntry entry : ClassMetadata.of(o.getClass()).getTypeHierarchy()) {
+            PropertyNode row = levels.get(entry.getDepth()).add(new PropertyNode(entry.getName(), ""));
+            levels.subList(entry.getDepth() + 1, levels.size()).clear();
+            levels.add(row);
+        }
+    }
+
+    public static PropertyNode fieldsRow(final Object target) {
+        return new PropertyNode("Fields", "") {
+
+            @Override
+            protected void computeChildren(List<PropertyNode> children) {
+                for (final ClassMetadata.FieldAccessor field : ClassMetadata.of(target.getClass()).getFields()) {
+                    children.add(new PropertyNode(field.getName()) {
+
+                        @Override
+                        protected Object computeValue() {
+                            Object fieldValue = field.get(target);
+                            if (fieldValue instanceof CPPASTNameBase) { // workaround for CPPASTNameBase.toString() NPE
+                                return fieldValue.getClass().getSimpleName();
+                            }
+                            return fieldValue;
+                        }
+                    });
+                }
+            }
+        };
+    }
+
+    public static PropertyNode methodsRow(final Object target) {
+        return new PropertyNode("Methods", "") {
+
+            @Override
+            protected void computeChildren(List<PropertyNode> children) {
+                for (String signature : ClassMetadata.of(target.getClass()).getMethodSignatures()) {
+                    String[] parts = signature.split(";");
+                    children.add(new PropertyNode(parts[0], parts[1]));
+                }
+            }
+        };
+    }
+
+    private static PropertyNode bindingTypeRow(IBinding binding) {
+        Object type;
+        try {
+            type = ClassMetadata.of(binding.getClass()).getType(binding);
+        } catch (Throwable e) {
+            return null;
+        }
+        if (!(type instanceof IType)) {
+            // seems there is no getType() method that returns an IType, that's ok
+            return null;
+        }
+        PropertyNode typeRow = new PropertyNode("Type", "");
+        addTypeHierarchy(typeRow, type);
+        typeRow.add(fieldsRow(type));
+        typeRow.add(methodsRow(type));
+        return typeRow;
+    }
+}
@@ -0,0 +1,186 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Fonts, colors and {@link TextWidths} shared by all widgets of a display.
+ * There is one font per style, derived from the system font, and one
+ * TextWidths per font, so labels measured by one view are cache hits for all
+ * others. Widgets acquire the pool of their display when they are created and
+ * release it when they are disposed, the resources are disposed together with
+ * the last reference or the display. A pool may be created again for the same
+ * display, the dispose hook is only registered once per display. Must be used
+ * on the UI thread.
+ */
+public final class ResourcePool {
+
+    public static final int FONT_HEIGHT = 10;
+
+    private static final Map<Display, ResourcePool> pools = new HashMap<>();
+    private static final Set<Display> hookedDisplays = new HashSet<>();
+
+    private final Display display;
+    private final Map<Integer, Font> fonts = new HashMap<>();
+    private final Map<Integer, TextWidths> textWidths = new HashMap<>();
+    private final Map<RGB, Color> colors = new HashMap<>();
+    private int references;
+
+    private ResourcePool(Display display) {
+        this.display = display;
+    }
+
+    /**
+     * Returns the pool of the display and adds a reference to it, which must
+     * be released with {@link #release()}.
+     */
+    public static ResourcePool acquire(final Display display) {
+        ResourcePool pool = pools.get(display);
+        if (pool == null) {
+            pool = new ResourcePool(display);
+            pools.put(display, pool);
+            if (hookedDisplays.add(display)) {
+                display.disposeExec(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        hookedDisplays.remove(display);
+                        ResourcePool current = pools.get(display);
+                        if (current != null) {
+                            current.dispose();
+                        }
+                    }
+                });
+            }
+        }
+        pool.references++;
+        return pool;
+    }
+
+    public void release() {
+        if (references > 0 && --references == 0) {
+            dispose();
+        }
+    }
+
+    /**
+     * Returns the font of the given style, a combination of SWT.NORMAL,
+     * SWT.BOLD and SWT.ITALIC.
+     */
+    public Font getFont(int style) {
+        Font font = fonts.get(style);
+        if (font == null) {
+            FontData fontData = display.getSystemFont().getFontData()[0];
+            fontData.setHeight(FONT_HEIGHT);
+            fontData.setStyle(style);
+            font = new Font(display, fontData);
+            fonts.put(style, font);
+        }
+        return font;
+    }
+
+    /**
+     * Returns the text widths of the font of the given style. The returned
+     * object may be used on any thread, texts are measured on the UI thread.
+     */
+    public TextWidths getTextWidths(int style) {
+        TextWidths widths = textWidths.get(style);
+        if (widths == null) {
+            GC gc = new GC(display);
+            try {
+                Font font = getFont(style);
+                gc.setFont(font);
+                widths = TextWidths.measure(gc, new FontMeasurer(display, font));
+            } finally {
+                gc.dispose();
+            }
+            textWidths.put(style, widths);
+        }
+        return widths;
+    }
+
+    public Color getColor(RGB rgb) {
+        Color color = colors.get(rgb);
+        if (color == null) {
+            color = new Color(display, rgb);
+            colors.put(rgb, color);
+        }
+        return color;
+    }
+
+    private void dispose() {
+        if (pools.get(display) != this) {
+            return;
+        }
+        pools.remove(display);
+        references = 0;
+        for (Font font : fonts.values()) {
+            font.dispose();
+        }
+        for (Color color : colors.values()) {
+            color.dispose();
+        }
+        fonts.clear();
+        textWidths.clear();
+        colors.clear();
+    }
+
+    /**
+     * Measures texts with textExtent like they are painted. Runs on the UI
+     * thread, other threads wait for it.
+     */
+    private static final class FontMeasurer implements TextWidths.Measurer {
+
+        private final Display display;
+        private final Font font;
+
+        FontMeasurer(Display display, Font font) {
+            this.display = display;
+            this.font = font;
+        }
+
+        @Override
+        public boolean measure(final String[] texts, final int[] widths) {
+            final boolean[] measured = new boolean[1];
+            Runnable measure = new Runnable() {
+
+                @Override
+                public void run() {
+                    if (display.isDisposed() || font.isDisposed()) {
+                        return;
+                    }
+                    GC gc = new GC(display);
+                    try {
+                        gc.setFont(font);
+                        for (int i = 0; i < texts.length; i++) {
+                            widths[i] = gc.textExtent(texts[i]).x;
+                        }
+                        measured[0] = true;
+                    } finally {
+                        gc.dispose();
+                    }
+                }
+            };
+            if (Display.getCurrent() == display) {
+                measure.run();
+            } else {
+                try {
+                    display.syncExec(measure);
+                } catch (SWTException e) {
+                    return false;
+                }
+            }
+            return measured[0];
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+
+/**
+ * Search structures over the AST of one translation unit file, built together
+ * with the {@link ViewTree}: a multimap from node class names to nodes, a
+ * multimap from identifiers to name nodes and a trigram index over the text of
+ * the file. All lookups are case insensitive. A signature search looks up the
+ * positions of the rarest trigram of the query, verifies the candidates
+ * against the text and maps every occurrence to the innermost node enclosing
+ * it.
+ */
+public class SearchIndex {
+
+    public enum Mode {
+        TYPE("Type"), NAME("Name"), SIGNATURE("Signature");
+
+        private final String label;
+
+        private Mode(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Map<String, List<IASTNode>> nodesByType;
+    private final Map<String, List<IASTNode>> namesByIdentifier;
+    private final char[] text;
+    private final Map<Long, int[]> trigrams;
+    private final OffsetIndex<IASTNode> offsetIndex;
+
+    private SearchIndex(Builder builder, OffsetIndex<IASTNode> offsetIndex) {
+        this.nodesByType = builder.nodesByType;
+        this.namesByIdentifier = builder.namesByIdentifier;
+        this.text = builder.text;
+        this.trigrams = new HashMap<>(builder.trigrams.size());
+        for (Map.Entry<Long, IntList> entry : builder.trigrams.entrySet()) {
+            trigrams.put(entry.getKey(), entry.getValue().toArray());
+        }
+        this.offsetIndex = offsetIndex;
+    }
+
+    /**
+     * Returns the nodes whose class name contains the query, the names equal
+     * to the query or the innermost nodes enclosing an occurrence of the query
+     * in the file, depending on the mode.
+     */
+    public List<IASTNode> find(Mode mode, String query) {
+        String key = lowerCase(query);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        switch (mode) {
+        case TYPE:
+            return findTypes(key);
+        case NAME:
+            List<IASTNode> names = namesByIdentifier.get(key);
+            return names != null ? names : Collections.<IASTNode> emptyList();
+        default:
+            return findSignatures(key.toCharArray());
+        }
+    }
+
+    private List<IASTNode> findTypes(String key) {
+        List<IASTNode> result = new ArrayList<>();
+        for (Map.Entry<String, List<IASTNode>> entry : nodesByType.entrySet()) {
+            if (entry.getKey().contains(key)) {
+                result.addAll(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private List<IASTNode> findSignatures(char[] query) {
+        Set<IASTNode> result = new LinkedHashSet<>();
+        for (int start : findOccurrences(query)) {
+            IASTNode node = offsetIndex.findInnermost(start);
+            while (node != null && !encloses(node, start, start + query.length)) {
+                node = node.getParent();
+            }
+            if (node != null) {
+                result.add(node);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private int[] findOccurrences(char[] query) {
+        if (query.length < 3) {
+            IntList occurrences = new IntList();
+            for (int start = 0; start + query.length <= text.length; start++) {
+                if (matches(query, start)) {
+                    occurrences.add(start);
+                }
+            }
+            return occurrences.toArray();
+        }
+        int[] rarest = null;
+        int rarestOffset = 0;
+        for (int i = 0; i + 3 <= query.length; i++) {
+            int[] positions = trigrams.get(trigram(query, i));
+            if (positions == null) {
+                return new int[0];
+            }
+            if (rarest == null || positions.length < rarest.length) {
+                rarest = positions;
+                rarestOffset = i;
+            }
+        }
+        IntList occurrences = new IntList();
+        for (int position : rarest) {
+            int start = position - rarestOffset;
+            if (start >= 0 && matches(query, start)) {
+                occurrences.add(start);
+            }
+        }
+        return occurrences.toArray();
+    }
+
+    private boolean matches(char[] query, int start) {
+        if (start + query.length > text.length) {
+            return false;
+        }
+        for (int i = 0; i < query.length; i++) {
+            if (text[start + i] != query[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean encloses(IASTNode node, int start, int end) {
+        IASTFileLocation location = node.getFileLocation();
+        return location != null && location.getNodeOffset() <= start && end <= location.getNodeOffset() + location.getNodeLength();
+    }
+
+    private static long trigram(char[] chars, int offset) {
+        return ((long) chars[offset] << 32) | ((long) chars[offset + 1] << 16) | chars[offset + 2];
+    }
+
+    private static String lowerCase(String string) {
+        char[] chars = string.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    public static class Builder {
+
+        private final Map<String, List<IASTNode>> nodesByType = new HashMap<>();
+        private final Map<String, List<IASTNode>> namesByIdentifier = new HashMap<>();
+        private final Map<Long, IntList> trigrams = new HashMap<>();
+        private char[] text = new char[0];
+
+        public Builder add(IASTNode node) {
+            put(nodesByType, lowerCase(node.getClass().getSimpleName()), node);
+            if (node instanceof IASTName) {
+                put(namesByIdentifier, lowerCase(new String(((IASTName) node).getSimpleID())), node);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the text of the file the node offsets refer to.
+         */
+        public Builder setText(String fileText) {
+            text = lowerCase(fileText).toCharArray();
+            trigrams.clear();
+            for (int i = 0; i + 3 <= text.length; i++) {
+                Long key = trigram(text, i);
+                IntList positions = trigrams.get(key);
+                if (positions == null) {
+                    positions = new IntList();
+                    trigrams.put(key, positions);
+                }
+                positions.add(i);
+            }
+            return this;
+        }
+
+        public SearchIndex build(OffsetIndex<IASTNode> offsetIndex) {
+            return new SearchIndex(this, offsetIndex);
+        }
+
+        private static void put(Map<String, List<IASTNode>> map, String key, IASTNode node) {
+            List<IASTNode> nodes = map.get(key);
+            if (nodes == null) {
+                nodes = new ArrayList<>();
+                map.put(key, nodes);
+            }
+            nodes.add(node);
+        }
+    }
+
+    private static class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * Uniform grid over the bounds of laid out {@link NodeFigure}s and the edges to
+ * their parents. Figures are registered in every cell their box covers, edges
+ * only in the cells their line segment actually crosses. The index is rebuilt
+ * after a full layout and updated for the figures reported by an incremental
+ * one, it answers the paint and hit-testing queries of the {@link ASTWidget}
+ * without visiting the whole tree.
+ */
+public class SpatialIndex {
+
+    private static final int ARROW_MARGIN = 10;
+
+    private final int cellWidth;
+    private final int cellHeight;
+    private final Map<Long, List<NodeFigure>> figureCells = new HashMap<>();
+    private final Map<Long, List<NodeFigure>> edgeCells = new HashMap<>();
+    /** The range of cells each figure and its edge are registered in. */
+    private final Map<NodeFigure, Rectangle> extents = new HashMap<>();
+
+    public SpatialIndex(int cellWidth, int cellHeight) {
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+    }
+
+    public void clear() {
+        figureCells.clear();
+        edgeCells.clear();
+        extents.clear();
+    }
+
+    public int getFigureCount() {
+        return extents.size();
+    }
+
+    /**
+     * Adds the figure and all its visible descendants.
+     */
+    public void addVisible(NodeFigure figure) {
+        add(figure);
+        for (NodeFigure child : figure.getVisibleChildren()) {
+            addVisible(child);
+        }
+    }
+
+    public void add(NodeFigure figure) {
+        int firstColumn = column(figure.getX());
+        int lastColumn = column(figure.getX() + figure.getWidth() - 1);
+        int firstRow = row(figure.getY());
+        int lastRow = row(figure.getY() + figure.getHeight() - 1);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                register(figureCells, column, row, figure);
+            }
+        }
+        Rectangle extent = new Rectangle(firstColumn, firstRow, lastColumn - firstColumn + 1, lastRow - firstRow + 1);
+        if (figure.getParent() != null) {
+            extent = extent.union(addEdge(figure));
+        }
+        extents.put(figure, extent);
+    }
+
+    /**
+     * Removes the figure and the edge to its parent, as they were registered
+     * when the figure was added.
+     */
+    public void remove(NodeFigure figure) {
+        Rectangle extent = extents.remove(figure);
+        if (extent == null) {
+            return;
+        }
+        for (int row = extent.y; row < extent.y + extent.height; row++) {
+            for (int column = extent.x; column < extent.x + extent.width; column++) {
+                unregister(figureCells, column, row, figure);
+                unregister(edgeCells, column, row, figure);
+            }
+        }
+    }
+
+    /**
+     * Registers the figure and its edge again after it or its parent moved.
+     */
+    public void update(NodeFigure figure) {
+        remove(figure);
+        add(figure);
+    }
+
+    /**
+     * Returns the figure whose box contains the given point, or null.
+     */
+    public NodeFigure findFigureAt(int x, int y) {
+        List<NodeFigure> candidates = figureCells.get(key(column(x), row(y)));
+        if (candidates != null) {
+            for (NodeFigure figure : candidates) {
+                if (figure.contains(x, y)) {
+                    return figure;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the figures whose box intersects the area.
+     */
+    public Collection<NodeFigure> findFigures(Rectangle area) {
+        Set<NodeFigure> result = new LinkedHashSet<>();
+        for (NodeFigure figure : query(figureCells, area)) {
+            if (figure.intersects(area)) {
+                result.add(figure);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the figures whose edge to their parent, including the arrow head,
+     * may intersect the area.
+     */
+    public Collection<NodeFigure> findEdges(Rectangle area) {
+        Rectangle extended = new Rectangle(area.x - ARROW_MARGIN, area.y - ARROW_MARGIN, area.width + 2 * ARROW_MARGIN, area.height + 2 * ARROW_MARGIN);
+        return new LinkedHashSet<>(query(edgeCells, extended));
+    }
+
+    /**
+     * Registers the edge of figure and returns the range of cells it crosses.
+     */
+    private Rectangle addEdge(NodeFigure figure) {
+        NodeFigure parent = figure.getParent();
+        double x1 = parent.getX() + parent.getWidth() / 2;
+        double y1 = parent.getY() + parent.getHeight();
+        double x2 = figure.getX() + figure.getWidth() / 2;
+        double y2 = figure.getY();
+        int minColumn = Integer.MAX_VALUE;
+        int maxColumn = Integer.MIN_VALUE;
+        for (int row = row((int) y1); row <= row((int) y2); row++) {
+            double top = Math.max(y1, (double) row * cellHeight);
+            double bottom = Math.min(y2, (double) (row + 1) * cellHeight);
+            double xTop = interpolate(x1, y1, x2, y2, top);
+            double xBottom = interpolate(x1, y1, x2, y2, bottom);
+            int firstColumn = column((int) Math.floor(Math.min(xTop, xBottom)));
+            int lastColumn = column((int) Math.ceil(Math.max(xTop, xBottom)));
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                register(edgeCells, column, row, figure);
+            }
+            minColumn = Math.min(minColumn, firstColumn);
+            maxColumn = Math.max(maxColumn, lastColumn);
+        }
+        if (minColumn > maxColumn) {
+            return new Rectangle(column((int) x2), row((int) y2), 1, 1);
+        }
+        return new Rectangle(minColumn, row((int) y1), maxColumn - minColumn + 1, row((int) y2) - row((int) y1) + 1);
+    }
+
+    private double interpolate(double x1, double y1, double x2, double y2, double y) {
+        if (y2 == y1) {
+            return x1;
+        }
+        return x1 + (x2 - x1) * (y - y1) / (y2 - y1);
+    }
+
+    private List<NodeFigure> query(Map<Long, List<NodeFigure>> cells, Rectangle area) {
+        List<NodeFigure> result = new ArrayList<>();
+        int lastColumn = column(area.x + area.width - 1);
+        int lastRow = row(area.y + area.height - 1);
+        for (int row = row(area.y); row <= lastRow; row++) {
+            for (int column = column(area.x); column <= lastColumn; column++) {
+                List<NodeFigure> figures = cells.get(key(column, row));
+                if (figures != null) {
+                    result.addAll(figures);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void register(Map<Long, List<NodeFigure>> cells, int column, int row, NodeFigure figure) {
+        Long key = key(column, row);
+        List<NodeFigure> figures = cells.get(key);
+        if (figures == null) {
+            figures = new ArrayList<>(4);
+            cells.put(key, figures);
+        }
+        figures.add(figure);
+    }
+
+    private void unregister(Map<Long, List<NodeFigure>> cells, int column, int row, NodeFigure figure) {
+        Long key = key(column, row);
+        List<NodeFigure> figures = cells.get(key);
+        if (figures != null && figures.remove(figure) && figures.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private int column(int x) {
+        return (int) Math.floor(x / (double) cellWidth);
+    }
+
+    private int row(int y) {
+        return (int) Math.floor(y / (double) cellHeight);
+    }
+
+    private static Long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+}
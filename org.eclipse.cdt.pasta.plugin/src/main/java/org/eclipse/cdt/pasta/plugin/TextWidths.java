@@ -0,0 +1,152 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.swt.graphics.GC;
+
+/**
+ * Text widths of one font that can be looked up from any thread. Widths are
+ * taken from a {@link Measurer}, which measures the texts exactly as they are
+ * painted, including kerning, and cached by text, since the labels of figures
+ * are mostly class names that repeat throughout the tree. At most
+ * MAX_CACHED_TEXTS texts are cached, measuring another one evicts the least
+ * recently used text. Without a measurer, or if it can no longer measure,
+ * the width of a text is estimated as the sum of the advance widths of its
+ * characters, read once on the UI thread, which may differ from the painted
+ * width by a few pixels.
+ */
+public class TextWidths {
+
+    /**
+     * Measures the painted widths of texts.
+     */
+    public interface Measurer {
+
+        /**
+         * Stores the width of each text in widths at the same index. Returns
+         * false if the texts could not be measured, e.g. because the font was
+         * disposed.
+         */
+        boolean measure(String[] texts, int[] widths);
+    }
+
+    private static final char FIRST_CHAR = ' ';
+    private static final char LAST_CHAR = '~';
+    private static final int MAX_CACHED_TEXTS = 10000;
+
+    private final int[] advances;
+    private final int averageWidth;
+    private final Measurer measurer;
+    private final Map<String, Integer> cache = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_CACHED_TEXTS;
+        }
+    };
+
+    /**
+     * Creates text widths that are only estimated from the advance widths.
+     *
+     * @param advances
+     *            advance widths of the characters from ' ' to '~'
+     * @param averageWidth
+     *            width of all other characters
+     */
+    public TextWidths(int[] advances, int averageWidth) {
+        this(advances, averageWidth, null);
+    }
+
+    /**
+     * @param advances
+     *            advance widths of the characters from ' ' to '~'
+     * @param averageWidth
+     *            width of all other characters
+     * @param measurer
+     *            measures the exact widths, or null to only estimate them
+     */
+    public TextWidths(int[] advances, int averageWidth, Measurer measurer) {
+        if (advances.length != LAST_CHAR - FIRST_CHAR + 1) {
+            throw new IllegalArgumentException("Expected " + (LAST_CHAR - FIRST_CHAR + 1) + " advance widths");
+        }
+        this.advances = advances.clone();
+        this.averageWidth = averageWidth;
+        this.measurer = measurer;
+    }
+
+    /**
+     * Reads the advance widths of the font currently set on gc. Must be
+     * called on the UI thread.
+     */
+    public static TextWidths measure(GC gc, Measurer measurer) {
+        int[] advances = new int[LAST_CHAR - FIRST_CHAR + 1];
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            advances[c - FIRST_CHAR] = gc.getAdvanceWidth(c);
+        }
+        return new TextWidths(advances, gc.getFontMetrics().getAverageCharWidth(), measurer);
+    }
+
+    public int getWidth(String text) {
+        synchronized (cache) {
+            Integer cached = cache.get(text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return measure(new String[] { text })[0];
+    }
+
+    /**
+     * Measures all texts that are not cached yet at once, so a worker thread
+     * waits for the measurer only once instead of once per text.
+     */
+    public void prefetch(Collection<String> texts) {
+        Set<String> missing = new LinkedHashSet<>();
+        synchronized (cache) {
+            for (String text : texts) {
+                if (!cache.containsKey(text)) {
+                    missing.add(text);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            measure(missing.toArray(new String[missing.size()]));
+        }
+    }
+
+    public int getCachedCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private int[] measure(String[] texts) {
+        int[] widths = new int[texts.length];
+        if (measurer == null || !measurer.measure(texts, widths)) {
+            for (int i = 0; i < texts.length; i++) {
+                widths[i] = estimate(texts[i]);
+            }
+        }
+        synchronized (cache) {
+            for (int i = 0; i < texts.length; i++) {
+                cache.put(texts[i], widths[i]);
+            }
+        }
+        return widths;
+    }
+
+    private int estimate(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            width += c >= FIRST_CHAR && c <= LAST_CHAR ? advances[c - FIRST_CHAR] : averageWidth;
+        }
+        return width;
+    }
+}
@@ -0,0 +1,122 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * Rendered tiles of a large drawing, e.g. offscreen images of the
+ * {@link ASTWidget} canvas. The drawing is divided into square tiles of a
+ * fixed size, addressed by column and row, which may be negative. At most
+ * maxTiles tiles are kept: adding another one disposes the tile that was
+ * least recently used. Tiles that are invalidated or replaced are disposed
+ * as well.
+ */
+public class TileCache<T> {
+
+    /**
+     * Frees the resources of a tile that is removed from the cache.
+     */
+    public interface Disposer<T> {
+
+        void dispose(T tile);
+    }
+
+    private final int tileSize;
+    private final int maxTiles;
+    private final Disposer<T> disposer;
+    private final LinkedHashMap<Long, T> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    public TileCache(int tileSize, int maxTiles, Disposer<T> disposer) {
+        if (tileSize < 1 || maxTiles < 1) {
+            throw new IllegalArgumentException("Tile size and maximum number of tiles must be positive");
+        }
+        this.tileSize = tileSize;
+        this.maxTiles = maxTiles;
+        this.disposer = disposer;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Returns the column or row of the tile containing the given x or y
+     * coordinate.
+     */
+    public int indexOf(int coordinate) {
+        return (int) Math.floor(coordinate / (double) tileSize);
+    }
+
+    /**
+     * Returns the tile at column and row and marks it as used, or null if it
+     * is not cached.
+     */
+    public T get(int column, int row) {
+        return tiles.get(key(column, row));
+    }
+
+    public void put(int column, int row, T tile) {
+        T previous = tiles.put(key(column, row), tile);
+        if (previous != null && previous != tile) {
+            disposer.dispose(previous);
+        }
+        Iterator<T> eldest = tiles.values().iterator();
+        while (tiles.size() > maxTiles) {
+            T evicted = eldest.next();
+            eldest.remove();
+            disposer.dispose(evicted);
+        }
+    }
+
+    /**
+     * Removes all tiles that intersect the area.
+     */
+    public void invalidate(Rectangle area) {
+        if (area.width <= 0 || area.height <= 0 || tiles.isEmpty()) {
+            return;
+        }
+        int firstColumn = indexOf(area.x);
+        int lastColumn = indexOf(area.x + area.width - 1);
+        int firstRow = indexOf(area.y);
+        int lastRow = indexOf(area.y + area.height - 1);
+        if ((long) (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1) <= tiles.size()) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    T tile = tiles.remove(key(column, row));
+                    if (tile != null) {
+                        disposer.dispose(tile);
+                    }
+                }
+            }
+            return;
+        }
+        Iterator<Map.Entry<Long, T>> entries = tiles.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, T> entry = entries.next();
+            int column = (int) (entry.getKey() >> 32);
+            int row = (int) (long) entry.getKey();
+            if (column >= firstColumn && column <= lastColumn && row >= firstRow && row <= lastRow) {
+                entries.remove();
+                disposer.dispose(entry.getValue());
+            }
+        }
+    }
+
+    public void clear() {
+        for (T tile : tiles.values()) {
+            disposer.dispose(tile);
+        }
+        tiles.clear();
+    }
+
+    private static Long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+}
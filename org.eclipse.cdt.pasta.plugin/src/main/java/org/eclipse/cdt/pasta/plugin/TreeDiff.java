@@ -0,0 +1,569 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+
+/**
+ * Structural diff of two ASTs in the style of GumTree. Nodes are compared by
+ * their label, the simple class name, and leaves also by their value, the raw
+ * signature.
+ * <p>
+ * Every node gets a hash over the labels and values of its subtree. The top
+ * down phase walks both trees from the tallest subtrees down and maps
+ * subtrees with equal hashes, at least MIN_HEIGHT high, as a whole, so
+ * identical parts of the files are never looked at again. Only hashes that
+ * occur once in each tree are mapped there, subtrees occurring several times
+ * are set aside until the end. The bottom up phase maps
+ * each remaining inner node to the unmapped node with the same label whose
+ * subtree contains most of the mapped descendants, if their dice coefficient
+ * exceeds MIN_DICE. The roots are always mapped. Children of newly mapped
+ * nodes are then recovered: first isomorphic subtrees, then nodes with the
+ * same label in order. Set aside subtrees that are still unmapped are then
+ * paired, first those whose parents are mapped to each other, the rest in
+ * order of appearance.
+ * <p>
+ * Unmapped nodes of the old tree are deleted, unmapped nodes of the new tree
+ * inserted. Mapped nodes are updated if their values differ and moved if
+ * their parents are not mapped to each other.
+ */
+public class TreeDiff {
+
+    public enum Change {
+        INSERTED("inserted"), DELETED("deleted"), MOVED("moved"), UPDATED("updated");
+
+        private final String label;
+
+        private Change(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final int MIN_HEIGHT = 2;
+    private static final double MIN_DICE = 0.5;
+
+    private final Tree before;
+    private final Tree after;
+    private final int[] beforeToAfter;
+    private final int[] afterToBefore;
+    private final Change[] beforeChanges;
+    private final Change[] afterChanges;
+    private final int[] counts = new int[Change.values().length];
+    private final List<List<Integer>> ambiguousBefore = new ArrayList<>();
+    private final List<List<Integer>> ambiguousAfter = new ArrayList<>();
+
+    private TreeDiff(IASTNode beforeRoot, IASTNode afterRoot) {
+        before = new Tree(beforeRoot);
+        after = new Tree(afterRoot);
+        beforeToAfter = new int[before.size()];
+        afterToBefore = new int[after.size()];
+        Arrays.fill(beforeToAfter, -1);
+        Arrays.fill(afterToBefore, -1);
+        beforeChanges = new Change[before.size()];
+        afterChanges = new Change[after.size()];
+    }
+
+    public static TreeDiff compute(IASTNode before, IASTNode after) {
+        TreeDiff diff = new TreeDiff(before, after);
+        diff.matchTopDown();
+        diff.matchBottomUp();
+        diff.matchAmbiguous();
+        diff.classify();
+        return diff;
+    }
+
+    /**
+     * Returns how a node of either tree changed, or null if it is unchanged.
+     */
+    public Change getChange(IASTNode node) {
+        Integer index = after.indexOf(node);
+        if (index != null) {
+            return afterChanges[index];
+        }
+        index = before.indexOf(node);
+        return index != null ? beforeChanges[index] : null;
+    }
+
+    /**
+     * Returns the node a node of either tree is mapped to, or null.
+     */
+    public IASTNode getMatch(IASTNode node) {
+        Integer index = after.indexOf(node);
+        if (index != null) {
+            return afterToBefore[index] >= 0 ? before.nodes[afterToBefore[index]] : null;
+        }
+        index = before.indexOf(node);
+        return index != null && beforeToAfter[index] >= 0 ? after.nodes[beforeToAfter[index]] : null;
+    }
+
+    /**
+     * Returns whether the node belongs to the old tree.
+     */
+    public boolean isBefore(IASTNode node) {
+        return after.indexOf(node) == null && before.indexOf(node) != null;
+    }
+
+    public int getCount(Change change) {
+        return counts[change.ordinal()];
+    }
+
+    /**
+     * Returns the changed nodes that are not inside an inserted or deleted
+     * subtree, first those of the new tree, then the deleted ones of the old
+     * tree, each in document order.
+     */
+    public List<IASTNode> getChangedRoots() {
+        List<IASTNode> roots = new ArrayList<>();
+        for (int j = 0; j < after.size(); j++) {
+            Change change = afterChanges[j];
+            int parent = after.parents[j];
+            if (change != null && (change != Change.INSERTED || parent < 0 || afterChanges[parent] != Change.INSERTED)) {
+                roots.add(after.nodes[j]);
+            }
+        }
+        for (int i = 0; i < before.size(); i++) {
+            int parent = before.parents[i];
+            if (beforeChanges[i] == Change.DELETED && (parent < 0 || beforeChanges[parent] != Change.DELETED)) {
+                roots.add(before.nodes[i]);
+            }
+        }
+        return roots;
+    }
+
+    private void matchTopDown() {
+        boolean[] beforeDeferred = new boolean[before.size()];
+        boolean[] afterDeferred = new boolean[after.size()];
+        PriorityQueue<Integer> beforeQueue = before.newHeightQueue();
+        PriorityQueue<Integer> afterQueue = after.newHeightQueue();
+        beforeQueue.add(0);
+        afterQueue.add(0);
+        while (!beforeQueue.isEmpty() && !afterQueue.isEmpty()) {
+            int beforeHeight = before.heights[beforeQueue.peek()];
+            int afterHeight = after.heights[afterQueue.peek()];
+            if (Math.max(beforeHeight, afterHeight) < MIN_HEIGHT) {
+                break;
+            }
+            if (beforeHeight > afterHeight) {
+                for (int i : pollAll(beforeQueue, before, beforeHeight)) {
+                    before.open(beforeQueue, i);
+                }
+            } else if (afterHeight > beforeHeight) {
+                for (int j : pollAll(afterQueue, after, afterHeight)) {
+                    after.open(afterQueue, j);
+                }
+            } else {
+                List<Integer> beforeNodes = pollAll(beforeQueue, before, beforeHeight);
+                List<Integer> afterNodes = pollAll(afterQueue, after, afterHeight);
+                Map<Long, List<Integer>> beforeByHash = before.groupByHash(beforeNodes);
+                Map<Long, List<Integer>> afterByHash = after.groupByHash(afterNodes);
+                for (Map.Entry<Long, List<Integer>> entry : beforeByHash.entrySet()) {
+                    List<Integer> candidates = afterByHash.get(entry.getKey());
+                    if (candidates == null) {
+                        continue;
+                    }
+                    List<Integer> originals = entry.getValue();
+                    if (originals.size() == 1 && candidates.size() == 1) {
+                        if (isomorphic(originals.get(0), candidates.get(0))) {
+                            mapSubtree(originals.get(0), candidates.get(0));
+                        }
+                        continue;
+                    }
+                    ambiguousBefore.add(originals);
+                    ambiguousAfter.add(candidates);
+                    for (int i : originals) {
+                        beforeDeferred[i] = true;
+                    }
+                    for (int j : candidates) {
+                        afterDeferred[j] = true;
+                    }
+                }
+                for (int i : beforeNodes) {
+                    if (beforeToAfter[i] < 0 && !beforeDeferred[i]) {
+                        before.open(beforeQueue, i);
+                    }
+                }
+                for (int j : afterNodes) {
+                    if (afterToBefore[j] < 0 && !afterDeferred[j]) {
+                        after.open(afterQueue, j);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Integer> pollAll(PriorityQueue<Integer> queue, Tree tree, int height) {
+        List<Integer> nodes = new ArrayList<>();
+        while (!queue.isEmpty() && tree.heights[queue.peek()] == height) {
+            nodes.add(queue.poll());
+        }
+        Integer[] sorted = nodes.toArray(new Integer[nodes.size()]);
+        Arrays.sort(sorted);
+        return Arrays.asList(sorted);
+    }
+
+    private void matchBottomUp() {
+        int[] seen = new int[after.size()];
+        int[] targets = new int[before.size()];
+        for (int i = before.size() - 1; i > 0; i--) {
+            if (beforeToAfter[i] >= 0 || before.sizes[i] == 1) {
+                continue;
+            }
+            int count = collectTargets(i, targets);
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(targets, 0, count);
+            int best = -1;
+            double bestDice = MIN_DICE;
+            for (int candidate : findCandidates(i, targets, count, seen)) {
+                double dice = dice(i, candidate, targets, count);
+                if (dice > bestDice) {
+                    best = candidate;
+                    bestDice = dice;
+                }
+            }
+            if (best >= 0) {
+                map(i, best);
+                recover(i, best);
+            }
+        }
+        if (beforeToAfter[0] < 0 && afterToBefore[0] < 0) {
+            map(0, 0);
+        }
+        if (beforeToAfter[0] == 0) {
+            recover(0, 0);
+        }
+    }
+
+    /**
+     * Stores the nodes the descendants of i are mapped to in targets and
+     * returns their number.
+     */
+    private int collectTargets(int i, int[] targets) {
+        int count = 0;
+        for (int d = i + 1; d < i + before.sizes[i]; d++) {
+            if (beforeToAfter[d] >= 0) {
+                targets[count++] = beforeToAfter[d];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the unmapped ancestors with the same label of the first count
+     * targets. Ancestors already visited for i are marked with i in seen, so
+     * every ancestor is visited once.
+     */
+    private List<Integer> findCandidates(int i, int[] targets, int count, int[] seen) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            for (int p = after.parents[targets[t]]; p >= 0 && seen[p] != i; p = after.parents[p]) {
+                seen[p] = i;
+                if (afterToBefore[p] < 0 && after.labels[p].equals(before.labels[i])) {
+                    candidates.add(p);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the dice coefficient of the descendants of i and j, counting the
+     * sorted targets of i inside the subtree of j by binary search.
+     */
+    private double dice(int i, int j, int[] targets, int count) {
+        int common = lowerBound(targets, count, j + after.sizes[j]) - lowerBound(targets, count, j + 1);
+        return 2.0 * common / (before.sizes[i] - 1 + after.sizes[j] - 1);
+    }
+
+    private static int lowerBound(int[] sorted, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Maps the subtrees of the repeated hashes set aside by the top down
+     * phase that are still unmapped. A subtree is paired with an isomorphic
+     * one under the node its parent is mapped to if possible, otherwise with
+     * the next unmapped one in order of appearance.
+     */
+    private void matchAmbiguous() {
+        for (int g = 0; g < ambiguousBefore.size(); g++) {
+            List<Integer> originals = ambiguousBefore.get(g);
+            List<Integer> candidates = ambiguousAfter.get(g);
+            Map<Integer, Deque<Integer>> candidatesByParent = new HashMap<>();
+            for (int j : candidates) {
+                if (afterToBefore[j] < 0) {
+                    queue(candidatesByParent, after.parents[j]).add(j);
+                }
+            }
+            for (int i : originals) {
+                if (beforeToAfter[i] >= 0 || beforeToAfter[before.parents[i]] < 0) {
+                    continue;
+                }
+                Deque<Integer> siblings = candidatesByParent.get(beforeToAfter[before.parents[i]]);
+                while (siblings != null && !siblings.isEmpty()) {
+                    int j = siblings.poll();
+                    if (afterToBefore[j] < 0 && isomorphic(i, j)) {
+                        mapSubtree(i, j);
+                        break;
+                    }
+                }
+            }
+            int k = 0;
+            for (int i : originals) {
+                if (beforeToAfter[i] >= 0) {
+                    continue;
+                }
+                while (k < candidates.size() && (afterToBefore[candidates.get(k)] >= 0 || !isomorphic(i, candidates.get(k)))) {
+                    k++;
+                }
+                if (k < candidates.size()) {
+                    mapSubtree(i, candidates.get(k++));
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the unmapped children of mapped nodes, isomorphic subtrees first,
+     * then nodes with equal labels in order, and continues with the children
+     * of the latter.
+     */
+    private void recover(int beforeRoot, int afterRoot) {
+        Deque<int[]> pending = new ArrayDeque<>();
+        pending.push(new int[] { beforeRoot, afterRoot });
+        while (!pending.isEmpty()) {
+            int[] pair = pending.pop();
+            List<Integer> beforeChildren = unmappedChildren(before, beforeToAfter, pair[0]);
+            List<Integer> afterChildren = unmappedChildren(after, afterToBefore, pair[1]);
+            if (beforeChildren.isEmpty() || afterChildren.isEmpty()) {
+                continue;
+            }
+            Map<Long, Deque<Integer>> afterByHash = new HashMap<>();
+            Map<String, Deque<Integer>> afterByLabel = new HashMap<>();
+            for (int j : afterChildren) {
+                queue(afterByHash, after.hashes[j]).add(j);
+                queue(afterByLabel, after.labels[j]).add(j);
+            }
+            for (int i : beforeChildren) {
+                Deque<Integer> candidates = afterByHash.get(before.hashes[i]);
+                while (candidates != null && !candidates.isEmpty()) {
+                    int j = candidates.poll();
+                    if (afterToBefore[j] < 0 && isomorphic(i, j)) {
+                        mapSubtree(i, j);
+                        break;
+                    }
+                }
+            }
+            for (int i : beforeChildren) {
+                if (beforeToAfter[i] >= 0) {
+                    continue;
+                }
+                Deque<Integer> candidates = afterByLabel.get(before.labels[i]);
+                while (candidates != null && !candidates.isEmpty()) {
+                    int j = candidates.poll();
+                    if (afterToBefore[j] < 0) {
+                        map(i, j);
+                        pending.push(new int[] { i, j });
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static <K> Deque<Integer> queue(Map<K, Deque<Integer>> map, K key) {
+        Deque<Integer> queue = map.get(key);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            map.put(key, queue);
+        }
+        return queue;
+    }
+
+    private static List<Integer> unmappedChildren(Tree tree, int[] mapping, int parent) {
+        List<Integer> children = new ArrayList<>();
+        for (int child = parent + 1; child < parent + tree.sizes[parent]; child += tree.sizes[child]) {
+            if (mapping[child] < 0) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private boolean isomorphic(int i, int j) {
+        if (before.hashes[i] != after.hashes[j] || before.sizes[i] != after.sizes[j]) {
+            return false;
+        }
+        for (int k = 0; k < before.sizes[i]; k++) {
+            if (before.sizes[i + k] != after.sizes[j + k] || !before.labels[i + k].equals(after.labels[j + k])
+                    || !Objects.equals(before.values[i + k], after.values[j + k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void mapSubtree(int i, int j) {
+        for (int k = 0; k < before.sizes[i]; k++) {
+            map(i + k, j + k);
+        }
+    }
+
+    private void map(int i, int j) {
+        beforeToAfter[i] = j;
+        afterToBefore[j] = i;
+    }
+
+    private void classify() {
+        for (int j = 0; j < after.size(); j++) {
+            int i = afterToBefore[j];
+            Change change = null;
+            if (i < 0) {
+                change = Change.INSERTED;
+            } else if (!Objects.equals(before.values[i], after.values[j])) {
+                change = Change.UPDATED;
+            } else if (j > 0 && (before.parents[i] < 0 || beforeToAfter[before.parents[i]] != after.parents[j])) {
+                change = Change.MOVED;
+            }
+            afterChanges[j] = change;
+            if (change != null) {
+                counts[change.ordinal()]++;
+            }
+        }
+        for (int i = 0; i < before.size(); i++) {
+            if (beforeToAfter[i] < 0) {
+                beforeChanges[i] = Change.DELETED;
+                counts[Change.DELETED.ordinal()]++;
+            } else {
+                beforeChanges[i] = afterChanges[beforeToAfter[i]];
+            }
+        }
+    }
+
+    /**
+     * One AST flattened in pre-order, so the subtree of node i consists of the
+     * nodes i to i + sizes[i] - 1.
+     */
+    private static class Tree {
+
+        private final IASTNode[] nodes;
+        private final int[] parents;
+        private final int[] sizes;
+        private final int[] heights;
+        private final long[] hashes;
+        private final String[] labels;
+        private final String[] values;
+        private final Map<IASTNode, Integer> indices;
+
+        Tree(IASTNode root) {
+            List<IASTNode> order = new ArrayList<>();
+            List<Integer> parentList = new ArrayList<>();
+            Deque<IASTNode> pending = new ArrayDeque<>();
+            Deque<Integer> pendingParents = new ArrayDeque<>();
+            pending.push(root);
+            pendingParents.push(-1);
+            while (!pending.isEmpty()) {
+                IASTNode node = pending.pop();
+                int index = order.size();
+                order.add(node);
+                parentList.add(pendingParents.pop());
+                IASTNode[] children = node.getChildren();
+                for (int c = children.length - 1; c >= 0; c--) {
+                    pending.push(children[c]);
+                    pendingParents.push(index);
+                }
+            }
+            int size = order.size();
+            nodes = order.toArray(new IASTNode[size]);
+            parents = new int[size];
+            sizes = new int[size];
+            heights = new int[size];
+            hashes = new long[size];
+            labels = new String[size];
+            values = new String[size];
+            indices = new IdentityHashMap<>(size);
+            for (int i = 0; i < size; i++) {
+                parents[i] = parentList.get(i);
+                labels[i] = nodes[i].getClass().getSimpleName();
+                indices.put(nodes[i], i);
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                sizes[i]++;
+                heights[i]++;
+                if (sizes[i] == 1) {
+                    values[i] = nodes[i].getRawSignature();
+                }
+                hashes[i] = hashes[i] * 31 + labels[i].hashCode() * 1000003L + Objects.hashCode(values[i]) + sizes[i];
+                int parent = parents[i];
+                if (parent >= 0) {
+                    sizes[parent] += sizes[i];
+                    heights[parent] = Math.max(heights[parent], heights[i]);
+                    hashes[parent] = hashes[parent] * 31 + hashes[i];
+                }
+            }
+        }
+
+        int size() {
+            return nodes.length;
+        }
+
+        Integer indexOf(IASTNode node) {
+            return indices.get(node);
+        }
+
+        PriorityQueue<Integer> newHeightQueue() {
+            return new PriorityQueue<>(16, new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer i1, Integer i2) {
+                    return Integer.compare(heights[i2], heights[i1]);
+                }
+            });
+        }
+
+        void open(PriorityQueue<Integer> queue, int parent) {
+            for (int child = parent + 1; child < parent + sizes[parent]; child += sizes[child]) {
+                queue.add(child);
+            }
+        }
+
+        Map<Long, List<Integer>> groupByHash(List<Integer> indexes) {
+            Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+            for (int i : indexes) {
+                List<Integer> group = groups.get(hashes[i]);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(hashes[i], group);
+                }
+                group.add(i);
+            }
+            return groups;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * Incremental tidy tree layout for {@link NodeFigure}s.
+ * <p>
+ * The layout runs on a {@link CompactTree} that mirrors the visible figures
+ * below the root. When figures are expanded, collapsed or resized only the
+ * model is updated, the children on their paths to the root are placed
+ * again and positions are only reassigned to figures that actually moved.
+ * Figures are positioned relative to a root centered at x = 0,
+ * {@link #getBounds(NodeFigure)} returns the extent of the laid out tree.
+ * <p>
+ * An update has three steps: {@link #record} mirrors the changed figures
+ * into the model, {@link #compute} lays out the model without touching any
+ * figure and so may run on any thread, and {@link #apply} writes the new
+ * boxes to the figures. {@link #layout(NodeFigure)} and {@link #update}
+ * run all three at once.
+ */
+public class TreeLayout {
+
+    /**
+     * The figures affected by an incremental update.
+     */
+    public static class Changes {
+
+        private final CompactTree tree;
+        private final boolean full;
+        private final Set<NodeFigure> updated;
+        private final List<NodeFigure> placed = new ArrayList<>();
+        private int[] boxes = new int[16];
+        private final List<NodeFigure> removed = new ArrayList<>();
+
+        Changes(CompactTree tree, boolean full, Collection<NodeFigure> updated) {
+            this.tree = tree;
+            this.full = full;
+            this.updated = new HashSet<>(updated);
+        }
+
+        /**
+         * Returns the visible figures whose box or edge to their parent
+         * changed, including all figures that were shown by the update.
+         */
+        public List<NodeFigure> getPlaced() {
+            return placed;
+        }
+
+        /**
+         * Returns the figures that were visible before the update but are
+         * hidden or detached now.
+         */
+        public List<NodeFigure> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Returns whether the whole tree was laid out from scratch.
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        /**
+         * Measures the figures that were shown by the update and have no
+         * width yet, see {@link CompactTree#measure(TextWidths, int)}.
+         */
+        public void measure(TextWidths textWidths, int padding) {
+            tree.measure(textWidths, padding);
+        }
+
+        void place(NodeFigure figure, int x, int width) {
+            int index = placed.size() * 2;
+            if (index == boxes.length) {
+                boxes = Arrays.copyOf(boxes, index * 2);
+            }
+            boxes[index] = x;
+            boxes[index + 1] = width;
+            placed.add(figure);
+        }
+
+        boolean isUpdated(NodeFigure figure) {
+            return updated.contains(figure);
+        }
+    }
+
+    private final float siblingDistance;
+    private final float subtreeDistance;
+    private final int levelHeight;
+    private final int nodeHeight;
+    private CompactTree model;
+
+    /**
+     * @param siblingDistance
+     *            horizontal gap between adjacent figures of the same parent
+     * @param subtreeDistance
+     *            horizontal gap between neighboring subtrees below the
+     *            level of the siblings
+     * @param levelHeight
+     *            vertical distance between two levels of the tree
+     * @param nodeHeight
+     *            height of a single figure
+     */
+    public TreeLayout(float siblingDistance, float subtreeDistance, int levelHeight, int nodeHeight) {
+        this.siblingDistance = siblingDistance;
+        this.subtreeDistance = subtreeDistance;
+        this.levelHeight = levelHeight;
+        this.nodeHeight = nodeHeight;
+    }
+
+    /**
+     * Lays out all visible figures below root from scratch.
+     */
+    public void layout(NodeFigure root) {
+        Changes changes = record(root);
+        compute(changes);
+        apply(changes);
+    }
+
+    /**
+     * Lays out a model that was prepared for a tree that is not displayed
+     * yet. The model of this layout is left alone, see
+     * {@link #setModel(CompactTree)}.
+     */
+    public void layout(CompactTree tree) {
+        Changes changes = new Changes(tree, true, Collections.<NodeFigure> emptyList());
+        compute(changes);
+        apply(changes);
+    }
+
+    /**
+     * Updates the layout after the visible children or the width of figure
+     * changed.
+     */
+    public Changes update(NodeFigure figure) {
+        return update(Collections.singletonList(figure));
+    }
+
+    /**
+     * Updates the layout after the visible children or the widths of several
+     * figures of the same tree changed. Subtrees that are not on a path from
+     * one of the figures to the root keep their positions, and only the
+     * figures that were actually moved, shown or hidden are reported.
+     */
+    public Changes update(Collection<NodeFigure> figures) {
+        Changes changes = record(figures);
+        compute(changes);
+        apply(changes);
+        return changes;
+    }
+
+    /**
+     * Starts a layout of all visible figures below root from scratch.
+     */
+    public Changes record(NodeFigure root) {
+        model = new CompactTree(root);
+        return new Changes(model, true, Collections.<NodeFigure> emptyList());
+    }
+
+    /**
+     * Mirrors the visible children and widths of figures and their ancestors
+     * into the model and returns the pending update. Falls back to a layout
+     * from scratch if the figures are not part of the current model.
+     */
+    public Changes record(Collection<NodeFigure> figures) {
+        if (!figures.isEmpty()) {
+            NodeFigure root = figures.iterator().next();
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            if (model == null || model.getRoot() != root) {
+                return record(root);
+            }
+        } else if (model == null) {
+            throw new IllegalStateException("Tree has not been laid out");
+        }
+        Changes changes = new Changes(model, false, figures);
+        Set<NodeFigure> synced = new HashSet<>();
+        for (NodeFigure figure : figures) {
+            List<NodeFigure> path = new ArrayList<>();
+            for (NodeFigure current = figure; current != null && synced.add(current); current = current.getParent()) {
+                path.add(current);
+            }
+            for (int i = path.size() - 1; i >= 0; i--) {
+                model.sync(path.get(i), changes.removed);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Lays out the model of changes. Only the model is touched, so this may
+     * run on any thread as long as the figures are not recorded meanwhile.
+     */
+    public void compute(Changes changes) {
+        changes.tree.layout(siblingDistance, subtreeDistance, changes);
+    }
+
+    /**
+     * Writes the boxes computed for changes to the figures.
+     */
+    public void apply(Changes changes) {
+        for (int i = 0; i < changes.placed.size(); i++) {
+            NodeFigure figure = changes.placed.get(i);
+            figure.setBounds(changes.boxes[i * 2], figure.getDepth() * levelHeight, changes.boxes[i * 2 + 1], nodeHeight);
+        }
+    }
+
+    /**
+     * Continues with a model that has been laid out by
+     * {@link #layout(CompactTree)}.
+     */
+    public void setModel(CompactTree model) {
+        this.model = model;
+    }
+
+    /**
+     * Returns the area covered by the laid out tree in layout coordinates.
+     */
+    public Rectangle getBounds(NodeFigure root) {
+        if (model == null || model.getRoot() != root) {
+            throw new IllegalArgumentException("Tree has not been laid out");
+        }
+        return model.getBounds(levelHeight, nodeHeight);
+    }
+}
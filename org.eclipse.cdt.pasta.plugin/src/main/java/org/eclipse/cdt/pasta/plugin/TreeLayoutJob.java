@@ -0,0 +1,59 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Measures the figures shown by a recorded layout update and computes the
+ * new positions in the background, see {@link TreeLayout#compute}. The
+ * result is handed back to the {@link ASTWidget} on the UI thread, which
+ * writes it to the figures. The job is not cancelable since the layout model
+ * has to stay consistent, the widget drops results it no longer needs.
+ */
+public class TreeLayoutJob extends Job {
+
+    private final ASTWidget widget;
+    private final Display display;
+    private final TreeLayout layout;
+    private final TreeLayout.Changes changes;
+    private final TextWidths textWidths;
+    private final int padding;
+    private final ViewMetrics metrics;
+
+    public TreeLayoutJob(ASTWidget widget, TreeLayout layout, TreeLayout.Changes changes, TextWidths textWidths, int padding, ViewMetrics metrics) {
+        super("Laying out AST");
+        this.widget = widget;
+        this.display = widget.getDisplay();
+        this.layout = layout;
+        this.changes = changes;
+        this.textWidths = textWidths;
+        this.padding = padding;
+        this.metrics = metrics;
+        setSystem(true);
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        ViewMetrics.Timer timer = metrics.start(ViewMetrics.Phase.MEASURE);
+        changes.measure(textWidths, padding);
+        timer.stop();
+        timer = metrics.start(ViewMetrics.Phase.LAYOUT);
+        layout.compute(changes);
+        timer.stop();
+        if (!display.isDisposed()) {
+            display.asyncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (!widget.isDisposed()) {
+                        widget.layoutComputed(changes);
+                    }
+                }
+            });
+        }
+        return Status.OK_STATUS;
+    }
+}
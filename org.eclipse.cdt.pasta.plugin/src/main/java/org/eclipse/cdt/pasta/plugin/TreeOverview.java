@@ -0,0 +1,167 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ControlAdapter;
+import org.eclipse.swt.events.ControlEvent;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.MouseAdapter;
+import org.eclipse.swt.events.MouseEvent;
+import org.eclipse.swt.events.MouseMoveListener;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+/**
+ * Shows the whole tree of an {@link ASTWidget} scaled down to fit, with the
+ * visible part outlined. Clicking or dragging scrolls the widget to the
+ * pointed at position. The scaled tree is rendered into an image once the
+ * layout of the widget settles, at most every UPDATE_DELAY milliseconds, so
+ * scrolling only repaints the outline. While hidden the image is not updated.
+ */
+public class TreeOverview extends Canvas {
+
+    private static final int UPDATE_DELAY = 100;
+
+    private final ASTWidget widget;
+    private Image image;
+    private float scale;
+    private boolean dragging;
+    private final Runnable update = new Runnable() {
+
+        @Override
+        public void run() {
+            if (!isDisposed() && isVisible()) {
+                renderImage();
+                redraw();
+            }
+        }
+    };
+    private final ViewportListener viewportListener = new ViewportListener() {
+
+        @Override
+        public void treeChanged() {
+            scheduleUpdate();
+        }
+
+        @Override
+        public void viewportChanged() {
+            redraw();
+        }
+    };
+
+    public TreeOverview(Composite parent, ASTWidget widget) {
+        super(parent, SWT.DOUBLE_BUFFERED | SWT.BORDER);
+        this.widget = widget;
+        widget.addViewportListener(viewportListener);
+        addPaintListener(new PaintListener() {
+
+            @Override
+            public void paintControl(PaintEvent e) {
+                e.gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+                e.gc.fillRectangle(e.x, e.y, e.width, e.height);
+                if (image != null) {
+                    e.gc.drawImage(image, 0, 0);
+                    paintViewport(e.gc);
+                }
+            }
+        });
+        addMouseListener(new MouseAdapter() {
+
+            @Override
+            public void mouseDown(MouseEvent e) {
+                if (e.button == 1) {
+                    dragging = true;
+                    jumpTo(e.x, e.y);
+                }
+            }
+
+            @Override
+            public void mouseUp(MouseEvent e) {
+                dragging = false;
+            }
+        });
+        addMouseMoveListener(new MouseMoveListener() {
+
+            @Override
+            public void mouseMove(MouseEvent e) {
+                if (dragging) {
+                    jumpTo(e.x, e.y);
+                }
+            }
+        });
+        addControlListener(new ControlAdapter() {
+
+            @Override
+            public void controlResized(ControlEvent e) {
+                scheduleUpdate();
+            }
+        });
+        addListener(SWT.Show, new Listener() {
+
+            @Override
+            public void handleEvent(Event e) {
+                scheduleUpdate();
+            }
+        });
+        addDisposeListener(new DisposeListener() {
+
+            @Override
+            public void widgetDisposed(DisposeEvent e) {
+                getDisplay().timerExec(-1, update);
+                if (!TreeOverview.this.widget.isDisposed()) {
+                    TreeOverview.this.widget.removeViewportListener(viewportListener);
+                }
+                disposeImage();
+            }
+        });
+    }
+
+    private void scheduleUpdate() {
+        getDisplay().timerExec(UPDATE_DELAY, update);
+    }
+
+    private void renderImage() {
+        disposeImage();
+        Rectangle client = getClientArea();
+        Rectangle tree = widget.getTreeBounds();
+        if (client.width <= 0 || client.height <= 0 || tree.width <= 0 || tree.height <= 0) {
+            return;
+        }
+        scale = Math.min((float) client.width / tree.width, (float) client.height / tree.height);
+        image = new Image(getDisplay(), Math.max(1, Math.round(tree.width * scale)), Math.max(1, Math.round(tree.height * scale)));
+        GC gc = new GC(image);
+        try {
+            gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+            gc.fillRectangle(image.getBounds());
+            widget.paintOverview(gc, scale);
+        } finally {
+            gc.dispose();
+        }
+    }
+
+    private void paintViewport(GC gc) {
+        Rectangle viewport = widget.getViewport();
+        gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_RED));
+        gc.drawRectangle((int) (viewport.x * scale), (int) (viewport.y * scale), Math.max(1, (int) (viewport.width * scale) - 1), Math.max(1, (int) (viewport.height * scale) - 1));
+    }
+
+    private void jumpTo(int x, int y) {
+        if (image != null && scale > 0) {
+            widget.scrollTo(Math.round(x / scale), Math.round(y / scale));
+        }
+    }
+
+    private void disposeImage() {
+        if (image != null) {
+            image.dispose();
+            image = null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timings and counters of the phases that bring an AST onto the screen.
+ * Parsing and building the view tree run in a job, the other phases on the UI
+ * thread, so all recording is synchronized. Besides the time, every phase
+ * records the bytes allocated by its thread if the VM reports them.
+ * Listeners are notified of every finished phase and of every new tree.
+ */
+public class ViewMetrics {
+
+    public enum Phase {
+        PARSE("parse"), BUILD("build"), MEASURE("measure"), LAYOUT("layout"), INDEX("index"), PAINT("paint");
+
+        private final String label;
+
+        private Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final MethodHandle ALLOCATED_BYTES = findAllocatedBytes();
+
+    private final long[] lastNanos = new long[Phase.values().length];
+    private final long[] totalNanos = new long[Phase.values().length];
+    private final long[] allocatedBytes = new long[Phase.values().length];
+    private final int[] counts = new int[Phase.values().length];
+    private int nodeCount;
+    private int figureCount;
+    private int paintedFigureCount;
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ViewMetrics() {
+        for (int i = 0; i < allocatedBytes.length; i++) {
+            allocatedBytes[i] = -1;
+        }
+    }
+
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts measuring a phase on the current thread, the phase is recorded
+     * when the returned timer is stopped.
+     */
+    public Timer start(Phase phase) {
+        return new Timer(phase);
+    }
+
+    private void record(Phase phase, long nanos, long allocated) {
+        synchronized (this) {
+            lastNanos[phase.ordinal()] = nanos;
+            totalNanos[phase.ordinal()] += nanos;
+            allocatedBytes[phase.ordinal()] = allocated;
+            counts[phase.ordinal()]++;
+        }
+        for (MetricsListener listener : listeners) {
+            listener.phaseFinished(this, phase, nanos, allocated);
+        }
+    }
+
+    public void treeShown() {
+        for (MetricsListener listener : listeners) {
+            listener.treeShown(this);
+        }
+    }
+
+    public synchronized long getLastNanos(Phase phase) {
+        return lastNanos[phase.ordinal()];
+    }
+
+    public synchronized long getTotalNanos(Phase phase) {
+        return totalNanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the bytes allocated during the last run of the phase, or -1 if
+     * unknown.
+     */
+    public synchronized long getAllocatedBytes(Phase phase) {
+        return allocatedBytes[phase.ordinal()];
+    }
+
+    /**
+     * Returns how often the phase ran, e.g. the number of layout passes.
+     */
+    public synchronized int getCount(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    /**
+     * Returns the number of AST nodes in the file of the shown tree.
+     */
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    public synchronized void setNodeCount(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Returns the number of figures visible after the last layout.
+     */
+    public synchronized int getFigureCount() {
+        return figureCount;
+    }
+
+    public synchronized void setFigureCount(int figureCount) {
+        this.figureCount = figureCount;
+    }
+
+    /**
+     * Returns the number of figures drawn by the last paint.
+     */
+    public synchronized int getPaintedFigureCount() {
+        return paintedFigureCount;
+    }
+
+    public synchronized void setPaintedFigureCount(int paintedFigureCount) {
+        this.paintedFigureCount = paintedFigureCount;
+    }
+
+    /**
+     * Returns a one-line summary with the last duration of every phase, the
+     * counters and the bytes allocated by the last run of all phases.
+     */
+    public synchronized String format() {
+        StringBuilder line = new StringBuilder();
+        long allocated = 0;
+        boolean allocationsKnown = false;
+        for (Phase phase : Phase.values()) {
+            int i = phase.ordinal();
+            line.append(phase.getLabel()).append(' ').append(formatMillis(lastNanos[i]));
+            if (phase == Phase.LAYOUT) {
+                line.append(" (").append(counts[i]).append(counts[i] == 1 ? " pass)" : " passes)");
+            }
+            line.append("  ");
+            if (allocatedBytes[i] >= 0) {
+                allocated += allocatedBytes[i];
+                allocationsKnown = true;
+            }
+        }
+        line.append("| ").append(nodeCount).append(" nodes, ").append(figureCount).append(" figures, ");
+        line.append(paintedFigureCount).append(" painted");
+        if (allocationsKnown) {
+            line.append(" | ").append(String.format(Locale.ROOT, "%.1f MB", allocated / (1024.0 * 1024.0))).append(" allocated");
+        }
+        return line.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1000000.0);
+    }
+
+    private static long currentAllocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            return (long) ALLOCATED_BYTES.invokeExact(Thread.currentThread().getId());
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Looks up getThreadAllocatedBytes(long) of the HotSpot specific thread
+     * bean, which is not available on every VM.
+     */
+    private static MethodHandle findAllocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean", false, ClassLoader.getSystemClassLoader());
+            if (!type.isInstance(bean)) {
+                return null;
+            }
+            Method method = type.getMethod("getThreadAllocatedBytes", long.class);
+            return MethodHandles.publicLookup().unreflect(method).bindTo(bean);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Measures one run of a phase.
+     */
+    public class Timer {
+
+        private final Phase phase;
+        private final long start;
+        private final long startAllocated;
+
+        Timer(Phase phase) {
+            this.phase = phase;
+            this.startAllocated = currentAllocatedBytes();
+            this.start = System.nanoTime();
+        }
+
+        public void stop() {
+            long nanos = System.nanoTime() - start;
+            long allocated = startAllocated >= 0 ? currentAllocatedBytes() - startAllocated : -1;
+            record(phase, nanos, allocated);
+        }
+    }
+}
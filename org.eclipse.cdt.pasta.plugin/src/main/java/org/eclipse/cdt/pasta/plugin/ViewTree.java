@@ -0,0 +1,366 @@
+package org.eclipse.cdt.pasta.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+
+/**
+ * The figure tree displayed by the {@link ASTWidget} for one translation unit.
+ * Construction does not touch any SWT resources, so a view tree can be built
+ * off the UI thread. Text widths are measured in the background once the tree
+ * is drawn, or ahead of time by {@link ASTWidget#prepareTree(ViewTree)}. Together
+ * with the figures the tree keeps an {@link OffsetIndex} over the file
+ * locations of all AST nodes of the file and a {@link SearchIndex}.
+ * <p>
+ * In compact mode a chain of nodes with a single child each is shown as one
+ * figure labeled with all their types, and nodes without children show their
+ * raw signature in their label instead of in an extra leaf figure. Figures
+ * below the maximum depth are never created.
+ */
+public class ViewTree {
+
+    /**
+     * How the AST is mapped to figures.
+     */
+    public static final class Options {
+
+        public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+        public static final Options DEFAULT = new Options(false, UNLIMITED_DEPTH);
+
+        private final boolean compact;
+        private final int maxDepth;
+
+        /**
+         * @param compact
+         *            whether single-child chains and leaves are shown compactly
+         * @param maxDepth
+         *            depth of the deepest figures below the root that are created
+         */
+        public Options(boolean compact, int maxDepth) {
+            if (maxDepth < 1) {
+                throw new IllegalArgumentException("Maximum depth must be positive: " + maxDepth);
+            }
+            this.compact = compact;
+            this.maxDepth = maxDepth;
+        }
+
+        public boolean isCompact() {
+            return compact;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+    }
+
+    private static final String CHAIN_SEPARATOR = " > ";
+    private static final String SIGNATURE_SEPARATOR = ": ";
+
+    private final IASTTranslationUnit ast;
+    private final Options options;
+    private NodeFigure root;
+    private final OffsetIndex<IASTNode> offsetIndex;
+    private final SearchIndex searchIndex;
+    private CompactTree layoutTree;
+
+    public ViewTree(IASTTranslationUnit ast) {
+        this(ast, Options.DEFAULT);
+    }
+
+    public ViewTree(IASTTranslationUnit ast, Options options) {
+        this.ast = ast;
+        this.options = options;
+        this.root = createFigure(ast);
+        OffsetIndex.Builder<IASTNode> offsets = new OffsetIndex.Builder<>();
+        SearchIndex.Builder search = new SearchIndex.Builder();
+        indexNodes(ast, offsets, search);
+        this.offsetIndex = offsets.build();
+        this.searchIndex = search.setText(ast.getRawSignature()).build(offsetIndex);
+    }
+
+    public IASTTranslationUnit getAST() {
+        return ast;
+    }
+
+    public NodeFigure getRoot() {
+        return root;
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    public OffsetIndex<IASTNode> getOffsetIndex() {
+        return offsetIndex;
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Keeps the layout model of the visible figures, measured and laid out by
+     * {@link ASTWidget#prepareTree(ViewTree)}, until the tree is drawn.
+     */
+    public void setLayoutTree(CompactTree layoutTree) {
+        this.layoutTree = layoutTree;
+    }
+
+    /**
+     * Returns the prepared layout model, if any, and forgets it.
+     */
+    public CompactTree takeLayoutTree() {
+        CompactTree tree = layoutTree;
+        layoutTree = null;
+        return tree;
+    }
+
+    /**
+     * Returns how the node of the figure changed if the tree shows a
+     * {@link TreeDiff}, null otherwise.
+     */
+    public TreeDiff.Change getChange(NodeFigure figure) {
+        return null;
+    }
+
+    /**
+     * Expands the figures on the path to the given AST node and returns the
+     * figure of the node, or of its deepest ancestor that has a figure.
+     */
+    public NodeFigure reveal(IASTNode astNode) {
+        Deque<IASTNode> path = new ArrayDeque<>();
+        for (IASTNode current = astNode; current != null && current != ast; current = current.getParent()) {
+            path.push(current);
+        }
+        NodeFigure figure = root;
+        skipChain(figure, path);
+        while (!path.isEmpty()) {
+            NodeFigure child = findChild(figure, path.pop());
+            if (child == null) {
+                break;
+            }
+            figure.setExpanded(true);
+            figure = child;
+            skipChain(figure, path);
+        }
+        return figure;
+    }
+
+    /**
+     * Returns whether the figure shows astNode, in compact mode as part of
+     * its chain.
+     */
+    public boolean shows(NodeFigure figure, IASTNode astNode) {
+        IASTNode current = figure.getASTNode();
+        if (current == astNode) {
+            return true;
+        }
+        if (!options.isCompact()) {
+            return false;
+        }
+        for (current = getOnlyChild(current); current != null; current = getOnlyChild(current)) {
+            if (current == astNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipChain(NodeFigure figure, Deque<IASTNode> path) {
+        if (!options.isCompact()) {
+            return;
+        }
+        IASTNode current = figure.getASTNode();
+        for (IASTNode next = getOnlyChild(current); next != null && !path.isEmpty() && path.peek() == next; next = getOnlyChild(next)) {
+            path.pop();
+        }
+    }
+
+    /**
+     * Takes over the figures of previous, the tree of an older version of the
+     * same file, so expansion state, text widths and layout survive a reparse.
+     * Materialized figures are matched top-down against the new AST: the
+     * children of a figure are aligned with the children of its new node by
+     * their type, first from both ends and then position by position. Matched
+     * figures are bound to the new nodes, unmatched ones are dropped or
+     * created. Must be called on the UI thread while previous is displayed,
+     * previous must not be used afterwards. Returns the figures whose
+     * children changed.
+     * <p>
+     * The root figure is only kept if its label is still the same. Otherwise,
+     * e.g. when an edit changed the compact chain below the root, this tree
+     * keeps its own root, which takes over the expansion state and children of
+     * the previous one, and the new root is reported as changed.
+     */
+    public List<NodeFigure> adopt(ViewTree previous) {
+        List<NodeFigure> changed = new ArrayList<>();
+        if (matches(previous.root, ast)) {
+            patch(previous.root, ast, changed);
+            root = previous.root;
+        } else {
+            root.setExpanded(previous.root.isExpanded());
+            if (previous.root.isMaterialized()) {
+                root.setChildren(new ArrayList<>(previous.root.getChildren()));
+                root.setMaterialized(true);
+            }
+            patch(root, ast, changed);
+            changed.remove(root);
+            changed.add(root);
+        }
+        return changed;
+    }
+
+    private void patch(NodeFigure figure, IASTNode astNode, List<NodeFigure> changed) {
+        figure.rebind(astNode);
+        if (!figure.isMaterialized()) {
+            return;
+        }
+        List<NodeFigure> oldChildren = figure.getChildren();
+        IASTNode[] newNodes = getChainEnd(astNode).getChildren();
+        List<NodeFigure> children = new ArrayList<>(Math.max(newNodes.length, 1));
+        if (newNodes.length == 0 && options.isCompact()) {
+            if (!oldChildren.isEmpty()) {
+                figure.setChildren(children);
+                changed.add(figure);
+            }
+            return;
+        } else if (newNodes.length == 0) {
+            String text = astNode.getRawSignature();
+            NodeFigure leaf = oldChildren.size() == 1 ? oldChildren.get(0) : null;
+            if (leaf != null && !leaf.isEnabled() && leaf.getText().equals(text)) {
+                leaf.rebind(astNode);
+            } else {
+                children.add(new NodeFigure(astNode, text, false));
+            }
+        } else {
+            int prefix = 0;
+            int common = Math.min(oldChildren.size(), newNodes.length);
+            while (prefix < common && matches(oldChildren.get(prefix), newNodes[prefix])) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < common - prefix && matches(oldChildren.get(oldChildren.size() - 1 - suffix), newNodes[newNodes.length - 1 - suffix])) {
+                suffix++;
+            }
+            boolean modified = oldChildren.size() != newNodes.length;
+            for (int i = 0; i < newNodes.length; i++) {
+                NodeFigure child;
+                if (i < prefix) {
+                    child = oldChildren.get(i);
+                } else if (i >= newNodes.length - suffix) {
+                    child = oldChildren.get(oldChildren.size() - (newNodes.length - i));
+                } else if (i < oldChildren.size() - suffix && matches(oldChildren.get(i), newNodes[i])) {
+                    child = oldChildren.get(i);
+                } else {
+                    child = null;
+                }
+                if (child != null) {
+                    patch(child, newNodes[i], changed);
+                } else {
+                    child = createFigure(newNodes[i]);
+                    modified = true;
+                }
+                children.add(child);
+            }
+            if (!modified) {
+                return;
+            }
+        }
+        if (!children.isEmpty()) {
+            figure.setChildren(children);
+            changed.add(figure);
+        }
+    }
+
+    private boolean matches(NodeFigure figure, IASTNode astNode) {
+        return figure.isEnabled() && figure.getText().equals(getText(astNode));
+    }
+
+    private NodeFigure findChild(NodeFigure figure, IASTNode astNode) {
+        materializeChildren(figure);
+        for (NodeFigure child : figure.getChildren()) {
+            if (child.getASTNode() == astNode && child.isEnabled()) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the child figures of figure unless it is at the maximum depth.
+     */
+    public void materializeChildren(NodeFigure figure) {
+        if (figure.isMaterialized() || figure.getDepth() >= options.getMaxDepth()) {
+            return;
+        }
+        IASTNode astNode = getChainEnd(figure.getASTNode());
+        for (IASTNode child : astNode.getChildren()) {
+            figure.addChild(createFigure(child));
+        }
+        if (figure.getChildren().size() == 0 && !options.isCompact()) {
+            figure.addChild(new NodeFigure(astNode, astNode.getRawSignature(), false));
+        }
+        figure.setMaterialized(true);
+    }
+
+    private NodeFigure createFigure(IASTNode astNode) {
+        return new NodeFigure(astNode, getText(astNode), true);
+    }
+
+    private String getText(IASTNode astNode) {
+        if (!options.isCompact()) {
+            return astNode.getClass().getSimpleName();
+        }
+        StringBuilder text = new StringBuilder(astNode.getClass().getSimpleName());
+        IASTNode end = astNode;
+        for (IASTNode next = getOnlyChild(end); next != null; next = getOnlyChild(next)) {
+            text.append(CHAIN_SEPARATOR).append(next.getClass().getSimpleName());
+            end = next;
+        }
+        if (end.getChildren().length == 0) {
+            text.append(SIGNATURE_SEPARATOR).append(end.getRawSignature());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the last node of the chain starting at astNode in compact mode,
+     * astNode otherwise.
+     */
+    private IASTNode getChainEnd(IASTNode astNode) {
+        IASTNode end = astNode;
+        if (options.isCompact()) {
+            for (IASTNode next = getOnlyChild(end); next != null; next = getOnlyChild(next)) {
+                end = next;
+            }
+        }
+        return end;
+    }
+
+    private static IASTNode getOnlyChild(IASTNode astNode) {
+        IASTNode[] children = astNode.getChildren();
+        return children.length == 1 ? children[0] : null;
+    }
+
+    private static void indexNodes(IASTTranslationUnit ast, OffsetIndex.Builder<IASTNode> offsets, SearchIndex.Builder search) {
+        Deque<IASTNode> pending = new ArrayDeque<>();
+        pending.push(ast);
+        while (!pending.isEmpty()) {
+            IASTNode node = pending.pop();
+            IASTFileLocation location = node.getFileLocation();
+            if (location != null && node.isPartOfTranslationUnitFile()) {
+                offsets.add(location.getNodeOffset(), location.getNodeLength(), node);
+                search.add(node);
+            }
+            IASTNode[] children = node.getChildren();
+            for (int i = children.length - 1; i >= 0; i--) {
+                pending.push(children[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.eclipse.cdt.pasta.plugin;
+
+/**
+ * Follows the tree and the visible part of an {@link ASTWidget}, e.g. to keep
+ * an overview up to date. Called on the UI thread.
+ */
+public interface ViewportListener {
+
+    /**
+     * Called after the displayed tree or its layout changed.
+     */
+    void treeChanged();
+
+    /**
+     * Called after the widget scrolled, zoomed or was resized.
+     */
+    void viewportChanged();
+}
@@ -0,0 +1,61 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.eclipse.cdt.pasta.test.TestNodes.name;
+import static org.eclipse.cdt.pasta.test.TestNodes.node;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.pasta.plugin.ASTExporter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ASTExporterTest {
+
+    private IASTTranslationUnit ast;
+
+    @Before
+    public void setUp() {
+        // int a;
+        IASTNode declarator = node(IASTNode.class, 4, 1, true, name("a", 4));
+        ast = node(IASTTranslationUnit.class, 0, 6, true, node(IASTNode.class, 0, 6, true, node(IASTNode.class, 0, 3, true), declarator));
+    }
+
+    @Test
+    public void writesNestedJson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ASTExporter(ASTExporter.Format.JSON, false).export(ast, out);
+        String json = out.toString("UTF-8").replaceAll("\"class\":\"[^\"]*\",", "").replace("\"file\":\"" + TestNodes.FILE_NAME + "\",", "");
+        assertEquals("{\"offset\":0,\"length\":6,\"line\":1,\"children\":["
+                + "{\"offset\":0,\"length\":6,\"line\":1,\"children\":["
+                + "{\"offset\":0,\"length\":3,\"line\":1},"
+                + "{\"offset\":4,\"length\":1,\"line\":1,\"children\":["
+                + "{\"offset\":4,\"length\":1,\"line\":1}]}]}]}\n", json);
+    }
+
+    @Test
+    public void writesLengthPrefixedBinary() throws IOException {
+        IASTNode leaf = node(IASTNode.class, 200, 1, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ASTExporter(ASTExporter.Format.BINARY, false).export(node(IASTNode.class, 0, 201, true, leaf), out);
+        byte[] bytes = out.toByteArray();
+        assertEquals("PAST", new String(bytes, 0, 4, "US-ASCII"));
+        assertEquals(ASTExporter.BINARY_VERSION, bytes[4]);
+
+        String className = leaf.getClass().getSimpleName();
+        byte[] file = TestNodes.FILE_NAME.getBytes("UTF-8");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(new byte[] { 0, (byte) className.length() });
+        expected.write(className.getBytes("UTF-8"));
+        expected.write(new byte[] { 1, 0, (byte) file.length });
+        expected.write(file);
+        expected.write(new byte[] { 0, (byte) 0xc9, 1, 1, 1 });
+        expected.write(new byte[] { 1, 1, 2, (byte) 0xc8, 1, 1, 1, 0 });
+        assertArrayEquals(expected.toByteArray(), Arrays.copyOfRange(bytes, 5, bytes.length));
+    }
+}
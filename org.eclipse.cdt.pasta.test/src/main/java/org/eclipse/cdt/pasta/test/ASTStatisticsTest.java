@@ -0,0 +1,54 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.eclipse.cdt.pasta.test.TestNodes.name;
+import static org.eclipse.cdt.pasta.test.TestNodes.node;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.pasta.plugin.ASTStatistics;
+import org.junit.Test;
+
+public class ASTStatisticsTest {
+
+    @Test
+    public void collectsDepthAndFanOut() {
+        // int a, b, c;
+        IASTNode declaration = node(IASTNode.class, 0, 12, true, name("a", 4), name("b", 7), name("c", 10));
+        IASTNode root = node(IASTNode.class, 0, 12, true, declaration);
+        ASTStatistics statistics = new ASTStatistics();
+        statistics.collect(root, false);
+        assertEquals(5, statistics.getNodeCount());
+        assertEquals(3, statistics.getNameCount());
+        assertEquals(2, statistics.getMaxDepth());
+        assertEquals(7 / 5.0, statistics.getMeanDepth(), 1e-9);
+        assertEquals(3, statistics.getMaxFanOut());
+        assertEquals(2.0, statistics.getMeanFanOut(), 1e-9);
+        assertEquals(Integer.valueOf(3), statistics.getNodeTypes().get(name("d", 0).getClass().getSimpleName()));
+    }
+
+    @Test
+    public void countsTypeHierarchy() {
+        IASTNode root = node(IASTNode.class, 0, 12, true, name("a", 4), name("b", 7));
+        ASTStatistics statistics = new ASTStatistics();
+        statistics.collect(root, false);
+        Map<String, Integer> types = statistics.getNodeHierarchyTypes();
+        assertEquals(Integer.valueOf(3), types.get("IASTNode"));
+        assertEquals(Integer.valueOf(2), types.get("IASTName"));
+        assertEquals(Integer.valueOf(3), types.get("Object"));
+    }
+
+    @Test
+    public void mergesStatistics() {
+        ASTStatistics first = new ASTStatistics();
+        first.collect(node(IASTNode.class, 0, 1, true, name("a", 0)), false);
+        ASTStatistics second = new ASTStatistics();
+        second.collect(node(IASTNode.class, 0, 1, true, node(IASTNode.class, 0, 1, true, name("b", 0))), false);
+        first.merge(second);
+        assertEquals(5, first.getNodeCount());
+        assertEquals(2, first.getNameCount());
+        assertEquals(2, first.getMaxDepth());
+        assertEquals(1, first.getMaxFanOut());
+    }
+}
@@ -0,0 +1,65 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.pasta.plugin.ClassMetadata;
+import org.junit.Test;
+
+public class ClassMetadataTest {
+
+    private interface Named {
+    }
+
+    private static class Base implements Named {
+        public int visible = 1;
+        private String hidden = "base";
+    }
+
+    private static class Derived extends Base {
+        private static final String CONSTANT = "constant";
+        private final String own = "derived";
+
+        public String getType() {
+            return own;
+        }
+    }
+
+    @Test
+    public void cachesMetadataPerClass() {
+        assertSame(ClassMetadata.of(Derived.class), ClassMetadata.of(Derived.class));
+    }
+
+    @Test
+    public void readsPublicAndDeclaredFieldsOnce() {
+        Derived derived = new Derived();
+        List<String> values = new ArrayList<>();
+        for (ClassMetadata.FieldAccessor field : ClassMetadata.of(Derived.class).getFields()) {
+            values.add(field.getName() + "=" + field.get(derived));
+        }
+        assertEquals(3, values.size());
+        assertEquals("visible=1", values.get(0));
+        assertTrue(values.contains("CONSTANT=constant"));
+        assertTrue(values.contains("own=derived"));
+    }
+
+    @Test
+    public void flattensTypeHierarchy() {
+        List<String> entries = new ArrayList<>();
+        for (ClassMetadata.HierarchyEntry entry : ClassMetadata.of(Derived.class).getTypeHierarchy()) {
+            entries.add(entry.getDepth() + ":" + entry.getName());
+        }
+        assertEquals("[0:Derived, 1:Base, 2:Named, 2:Object]", entries.toString());
+    }
+
+    @Test
+    public void invokesTypeGetter() throws Throwable {
+        assertEquals("derived", ClassMetadata.of(Derived.class).getType(new Derived()));
+        assertNull(ClassMetadata.of(Base.class).getType(new Base()));
+    }
+}
@@ -0,0 +1,112 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.cdt.pasta.plugin.CompactTree;
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.TextWidths;
+import org.eclipse.cdt.pasta.plugin.TreeLayout;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactTreeTest {
+
+    private TreeLayout layout;
+    private List<NodeFigure> figures;
+    private NodeFigure root;
+
+    @Before
+    public void setUp() {
+        layout = new TreeLayout(1f, 20f, 60, 20);
+        figures = new ArrayList<>();
+        root = figure(30);
+        figures.add(root);
+        for (int i = 0; i < 300; i++) {
+            NodeFigure parent = figures.get((i * 7) % figures.size());
+            NodeFigure child = figure(10 + (i * 13) % 40);
+            parent.addChild(child);
+            figures.add(child);
+        }
+        for (int i = 0; i < figures.size(); i++) {
+            figures.get(i).setExpanded(i % 5 != 3);
+        }
+    }
+
+    @Test
+    public void hiddenSubtreesReleaseTheirSlots() {
+        CompactTree compact = new CompactTree(root);
+        layout.setModel(compact);
+        layout.layout(compact);
+        List<Rectangle> expected = visibleBounds(root, new ArrayList<Rectangle>());
+        assertEquals(expected.size(), compact.size());
+        NodeFigure child = root.getVisibleChildren().get(0);
+
+        root.setExpanded(false);
+        TreeLayout.Changes changes = layout.update(root);
+        assertEquals(1, compact.size());
+        assertEquals(expected.size() - 1, changes.getRemoved().size());
+        assertFalse(compact.contains(child));
+
+        root.setExpanded(true);
+        layout.update(root);
+        assertEquals(expected.size(), compact.size());
+        assertTrue(compact.contains(child));
+        assertEquals(expected, visibleBounds(root, new ArrayList<Rectangle>()));
+    }
+
+    @Test
+    public void incrementalUpdateAfterCompactLayout() {
+        CompactTree compact = new CompactTree(root);
+        layout.setModel(compact);
+        layout.layout(compact);
+        for (int i = 0; i < figures.size(); i += 4) {
+            NodeFigure figure = figures.get((i * 11) % figures.size());
+            figure.setExpanded(!figure.isExpanded());
+            layout.update(figure);
+        }
+        Rectangle incrementalBounds = layout.getBounds(root);
+        List<Rectangle> incremental = visibleBounds(root, new ArrayList<Rectangle>());
+        assertEquals(incremental.size(), compact.size());
+
+        layout.layout(root);
+        assertEquals(layout.getBounds(root), incrementalBounds);
+        assertEquals(visibleBounds(root, new ArrayList<Rectangle>()), incremental);
+    }
+
+    @Test
+    public void measuresOnlyUnmeasuredFigures() {
+        NodeFigure parent = new NodeFigure(null, "ab", true);
+        NodeFigure measured = new NodeFigure(null, "abc", true);
+        measured.setWidth(7);
+        parent.addChild(measured);
+        parent.setExpanded(true);
+        int[] advances = new int['~' - ' ' + 1];
+        Arrays.fill(advances, 5);
+        CompactTree compact = new CompactTree(parent);
+        compact.measure(new TextWidths(advances, 8), 12);
+        layout.layout(compact);
+        assertEquals(22, parent.getWidth());
+        assertEquals(7, measured.getWidth());
+    }
+
+    private List<Rectangle> visibleBounds(NodeFigure figure, List<Rectangle> bounds) {
+        bounds.add(figure.getBounds());
+        for (NodeFigure child : figure.getVisibleChildren()) {
+            visibleBounds(child, bounds);
+        }
+        return bounds;
+    }
+
+    private NodeFigure figure(int width) {
+        NodeFigure figure = new NodeFigure(null, "", true);
+        figure.setWidth(width);
+        return figure;
+    }
+}
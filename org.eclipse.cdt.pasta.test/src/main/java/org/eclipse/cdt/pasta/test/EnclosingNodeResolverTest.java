@@ -0,0 +1,53 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.eclipse.cdt.pasta.test.TestNodes.node;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.pasta.plugin.EnclosingNodeResolver;
+import org.junit.Test;
+
+public class EnclosingNodeResolverTest {
+
+    @Test
+    public void resolvesInnermostEnclosingNodes() {
+        // int f() { return a + b; }  int g;
+        IASTNode a = node(IASTNode.class, 17, 1, true);
+        IASTNode b = node(IASTNode.class, 21, 1, true);
+        IASTNode binary = node(IASTNode.class, 17, 5, true, a, b);
+        IASTNode body = node(IASTNode.class, 8, 18, true, binary);
+        IASTNode function = node(IASTNode.class, 0, 26, true, body);
+        IASTNode declaration = node(IASTNode.class, 28, 6, true);
+        IASTTranslationUnit ast = node(IASTTranslationUnit.class, 0, 36, true, declaration, function);
+
+        EnclosingNodeResolver resolver = new EnclosingNodeResolver(ast);
+        int inA = resolver.add(17, 1);
+        int inBinary = resolver.add(18, 3);
+        int inDeclaration = resolver.add(32, 1);
+        int inBody = resolver.add(9, 1);
+        int spanning = resolver.add(20, 10);
+        int outside = resolver.add(40, 1);
+        IASTNode[] result = resolver.resolve();
+
+        assertSame(a, result[inA]);
+        assertSame(binary, result[inBinary]);
+        assertSame(declaration, result[inDeclaration]);
+        assertSame(body, result[inBody]);
+        assertSame(ast, result[spanning]);
+        assertNull(result[outside]);
+    }
+
+    @Test
+    public void ignoresNodesOfOtherFiles() {
+        IASTNode header = node(IASTNode.class, 0, 100, false);
+        IASTTranslationUnit ast = node(IASTTranslationUnit.class, 0, 10, true, header);
+        EnclosingNodeResolver resolver = new EnclosingNodeResolver(ast);
+        int inFile = resolver.add(5, 1);
+        int beyondFile = resolver.add(50, 1);
+        IASTNode[] result = resolver.resolve();
+        assertSame(ast, result[inFile]);
+        assertNull(result[beyondFile]);
+    }
+}
@@ -0,0 +1,59 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.cdt.pasta.plugin.OffsetIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffsetIndexTest {
+
+    private OffsetIndex<String> index;
+
+    @Before
+    public void setUp() {
+        // int f() { return a + b; }  int g;
+        index = new OffsetIndex.Builder<String>()
+                .add(0, 36, "tu")
+                .add(0, 26, "function")
+                .add(0, 7, "declarator")
+                .add(4, 1, "name")
+                .add(8, 18, "body")
+                .add(10, 14, "return")
+                .add(17, 5, "binary")
+                .add(17, 1, "a")
+                .add(21, 1, "b")
+                .add(28, 6, "declaration")
+                .add(28, 6, "simpleDeclaration")
+                .build();
+    }
+
+    @Test
+    public void findsInnermostRange() {
+        assertEquals("name", index.findInnermost(4));
+        assertEquals("declarator", index.findInnermost(5));
+        assertEquals("a", index.findInnermost(17));
+        assertEquals("binary", index.findInnermost(18));
+        assertEquals("b", index.findInnermost(21));
+        assertEquals("return", index.findInnermost(22));
+        assertEquals("body", index.findInnermost(25));
+    }
+
+    @Test
+    public void findsEnclosingRangeBetweenSiblings() {
+        assertEquals("tu", index.findInnermost(26));
+        assertEquals("tu", index.findInnermost(35));
+    }
+
+    @Test
+    public void identicalRangesResolveToLastAdded() {
+        assertEquals("simpleDeclaration", index.findInnermost(30));
+    }
+
+    @Test
+    public void offsetsOutsideAllRanges() {
+        assertNull(index.findInnermost(-1));
+        assertNull(index.findInnermost(36));
+    }
+}
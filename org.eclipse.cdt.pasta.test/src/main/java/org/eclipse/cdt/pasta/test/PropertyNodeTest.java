@@ -0,0 +1,71 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.eclipse.cdt.pasta.plugin.PropertyNode;
+import org.junit.Test;
+
+public class PropertyNodeTest {
+
+    private int computations;
+
+    @Test
+    public void computesValueAndChildrenOnce() {
+        PropertyNode node = new PropertyNode("node") {
+
+            @Override
+            protected Object computeValue() {
+                computations++;
+                return "value";
+            }
+
+            @Override
+            protected void computeChildren(List<PropertyNode> children) {
+                computations++;
+                children.add(new PropertyNode("child", ""));
+            }
+        };
+        assertEquals(0, computations);
+        assertEquals("value", node.getValue());
+        assertEquals("value", node.getValue());
+        assertEquals(1, node.getChildren().size());
+        assertEquals(1, node.getChildren().size());
+        assertEquals(2, computations);
+    }
+
+    @Test
+    public void loadsWholeSubtree() {
+        PropertyNode node = new PropertyNode("node", "") {
+
+            @Override
+            protected void computeChildren(List<PropertyNode> children) {
+                computations++;
+                children.add(new PropertyNode("child") {
+
+                    @Override
+                    protected Object computeValue() {
+                        computations++;
+                        return "value";
+                    }
+                });
+            }
+        };
+        node.load();
+        assertEquals(2, computations);
+        assertEquals("value", node.getChildren().get(0).getValue());
+        assertEquals(2, computations);
+    }
+
+    @Test
+    public void truncatesLongValues() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < PropertyNode.MAX_VALUE_LENGTH + 10; i++) {
+            value.append('x');
+        }
+        String shown = new PropertyNode("node", value.toString()).getValue();
+        assertEquals(PropertyNode.MAX_VALUE_LENGTH + 3, shown.length());
+        assertEquals("...", shown.substring(PropertyNode.MAX_VALUE_LENGTH));
+    }
+}
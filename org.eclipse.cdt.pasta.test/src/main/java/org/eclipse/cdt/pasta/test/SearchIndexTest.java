@@ -0,0 +1,78 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.eclipse.cdt.pasta.test.TestNodes.name;
+import static org.eclipse.cdt.pasta.test.TestNodes.node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.pasta.plugin.OffsetIndex;
+import org.eclipse.cdt.pasta.plugin.SearchIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+    private static final String TEXT = "int foo() { return Bar + bar; }  int g;";
+
+    private IASTName foo;
+    private IASTName upperBar;
+    private IASTName lowerBar;
+    private IASTNode sum;
+    private IASTNode body;
+    private IASTName g;
+    private IASTTranslationUnit ast;
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        foo = name("foo", 4);
+        upperBar = name("Bar", 19);
+        lowerBar = name("bar", 25);
+        sum = node(IASTNode.class, 19, 9, true, upperBar, lowerBar);
+        body = node(IASTNode.class, 10, 21, true, sum);
+        IASTNode function = node(IASTNode.class, 0, 31, true, foo, body);
+        g = name("g", 37);
+        ast = node(IASTTranslationUnit.class, 0, TEXT.length(), true, function, g);
+
+        OffsetIndex.Builder<IASTNode> offsets = new OffsetIndex.Builder<>();
+        SearchIndex.Builder search = new SearchIndex.Builder();
+        for (IASTNode node : Arrays.asList(ast, function, foo, body, sum, upperBar, lowerBar, g)) {
+            int offset = node.getFileLocation().getNodeOffset();
+            offsets.add(offset, node.getFileLocation().getNodeLength(), node);
+            search.add(node);
+        }
+        index = search.setText(TEXT).build(offsets.build());
+    }
+
+    @Test
+    public void findsNamesIgnoringCase() {
+        assertEquals(Arrays.asList(upperBar, lowerBar), index.find(SearchIndex.Mode.NAME, "bar"));
+        assertEquals(Arrays.asList(g), index.find(SearchIndex.Mode.NAME, "G"));
+        assertTrue(index.find(SearchIndex.Mode.NAME, "ba").isEmpty());
+    }
+
+    @Test
+    public void findsInnermostNodesEnclosingSignature() {
+        assertEquals(Arrays.asList(upperBar, lowerBar), index.find(SearchIndex.Mode.SIGNATURE, "BAR"));
+        assertEquals(Arrays.asList(sum), index.find(SearchIndex.Mode.SIGNATURE, "bar + b"));
+        assertEquals(Arrays.asList(body), index.find(SearchIndex.Mode.SIGNATURE, "return"));
+        assertEquals(Arrays.asList(ast), index.find(SearchIndex.Mode.SIGNATURE, "}  int"));
+        assertTrue(index.find(SearchIndex.Mode.SIGNATURE, "baz").isEmpty());
+    }
+
+    @Test
+    public void findsShortSignaturesWithoutTrigrams() {
+        assertEquals(Arrays.asList(foo), index.find(SearchIndex.Mode.SIGNATURE, "fo"));
+    }
+
+    @Test
+    public void findsTypesBySubstring() {
+        assertEquals(8, index.find(SearchIndex.Mode.TYPE, "proxy").size());
+        assertTrue(index.find(SearchIndex.Mode.TYPE, "CPPASTFunctionCallExpression").isEmpty());
+    }
+}
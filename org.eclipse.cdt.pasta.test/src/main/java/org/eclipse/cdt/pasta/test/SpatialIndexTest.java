@@ -0,0 +1,88 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.SpatialIndex;
+import org.eclipse.cdt.pasta.plugin.TreeLayout;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpatialIndexTest {
+
+    private NodeFigure root;
+    private NodeFigure left;
+    private NodeFigure right;
+    private SpatialIndex index;
+
+    @Before
+    public void setUp() {
+        root = figure(100);
+        left = figure(300);
+        right = figure(300);
+        root.addChild(left);
+        root.addChild(right);
+        root.setExpanded(true);
+        new TreeLayout(1f, 20f, 60, 20).layout(root);
+        index = new SpatialIndex(64, 60);
+        index.addVisible(root);
+    }
+
+    @Test
+    public void findsFigureUnderPoint() {
+        assertSame(root, index.findFigureAt(0, 10));
+        assertSame(left, index.findFigureAt(left.getX() + 1, 61));
+        assertSame(right, index.findFigureAt(right.getX() + right.getWidth() - 1, 79));
+        assertNull(index.findFigureAt(0, 30));
+        assertNull(index.findFigureAt(left.getX() - 1, 70));
+    }
+
+    @Test
+    public void findsOnlyFiguresInArea() {
+        Collection<NodeFigure> figures = index.findFigures(new Rectangle(right.getX() + 100, 0, 10, 100));
+        assertEquals(new HashSet<>(Arrays.asList(right)), new HashSet<>(figures));
+    }
+
+    @Test
+    public void findsEdgesCrossingArea() {
+        int leftEdgeX = left.getX() + left.getWidth() / 2;
+        Collection<NodeFigure> edges = index.findEdges(new Rectangle(leftEdgeX - 1, 55, 2, 2));
+        assertTrue(edges.contains(left));
+        assertTrue(!edges.contains(right));
+        assertTrue(index.findEdges(new Rectangle(left.getX(), 100, 50, 50)).isEmpty());
+    }
+
+    @Test
+    public void updatesMovedFigures() {
+        NodeFigure child = figure(50);
+        left.addChild(child);
+        left.setExpanded(true);
+        new TreeLayout(1f, 20f, 60, 20).update(left);
+        index.update(left);
+        index.update(right);
+        index.add(child);
+        assertEquals(4, index.getFigureCount());
+        assertSame(child, index.findFigureAt(child.getX() + 1, 121));
+        assertSame(left, index.findFigureAt(left.getX() + 1, 61));
+        assertTrue(index.findEdges(new Rectangle(child.getX() + child.getWidth() / 2 - 1, 115, 2, 2)).contains(child));
+
+        index.remove(child);
+        assertEquals(3, index.getFigureCount());
+        assertNull(index.findFigureAt(child.getX() + 1, 121));
+        assertTrue(!index.findEdges(new Rectangle(child.getX(), 85, child.getWidth(), 35)).contains(child));
+    }
+
+    private NodeFigure figure(int width) {
+        NodeFigure figure = new NodeFigure(null, "", true);
+        figure.setWidth(width);
+        return figure;
+    }
+}
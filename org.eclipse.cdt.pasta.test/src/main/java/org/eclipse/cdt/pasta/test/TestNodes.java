@@ -0,0 +1,105 @@
+package org.eclipse.cdt.pasta.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+
+/**
+ * Creates minimal AST nodes backed by dynamic proxies. The nodes answer their
+ * file location, children, parent and, for names, their identifier, which is
+ * also their raw signature.
+ */
+public final class TestNodes {
+
+    public static final String FILE_NAME = "/project/test.cpp";
+
+    private TestNodes() {
+    }
+
+    public static <T extends IASTNode> T node(Class<T> type, int offset, int length, boolean inFile, IASTNode... children) {
+        return name(type, null, offset, length, inFile, children);
+    }
+
+    public static IASTName name(String identifier, int offset) {
+        return name(IASTName.class, identifier, offset, identifier.length(), true);
+    }
+
+    public static <T extends IASTNode> T name(Class<T> type, String identifier, int offset, int length, boolean inFile, IASTNode... children) {
+        T node = proxy(type, new NodeHandler(identifier, offset, length, inFile, children));
+        for (IASTNode child : children) {
+            ((NodeHandler) Proxy.getInvocationHandler(child)).parent = node;
+        }
+        return node;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(TestNodes.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private static class NodeHandler implements InvocationHandler {
+
+        private final String identifier;
+        private final int offset;
+        private final IASTFileLocation location;
+        private final boolean inFile;
+        private final IASTNode[] children;
+        private IASTNode parent;
+
+        NodeHandler(String identifier, final int offset, final int length, boolean inFile, IASTNode[] children) {
+            this.identifier = identifier;
+            this.offset = offset;
+            this.inFile = inFile;
+            this.children = children;
+            this.location = proxy(IASTFileLocation.class, new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                    case "getNodeOffset":
+                        return offset;
+                    case "getNodeLength":
+                        return length;
+                    case "getFileName":
+                        return FILE_NAME;
+                    case "getStartingLineNumber":
+                        return 1;
+                    default:
+                        return null;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "getFileLocation":
+                return location;
+            case "getChildren":
+                return children;
+            case "getParent":
+                return parent;
+            case "isPartOfTranslationUnitFile":
+                return inFile;
+            case "getSimpleID":
+                return identifier.toCharArray();
+            case "getRawSignature":
+                return identifier != null ? identifier : "";
+            case "getFilePath":
+                return FILE_NAME;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return identifier != null ? identifier : "node@" + offset;
+            default:
+                return null;
+            }
+        }
+    }
+}
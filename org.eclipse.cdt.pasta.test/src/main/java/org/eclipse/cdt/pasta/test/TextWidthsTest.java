@@ -0,0 +1,85 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.cdt.pasta.plugin.TextWidths;
+import org.junit.Test;
+
+public class TextWidthsTest {
+
+    @Test
+    public void sumsAdvanceWidths() {
+        int[] advances = new int['~' - ' ' + 1];
+        advances['a' - ' '] = 6;
+        advances['b' - ' '] = 7;
+        TextWidths widths = new TextWidths(advances, 9);
+        assertEquals(19, widths.getWidth("aba"));
+        assertEquals(15, widths.getWidth("a\u00e4"));
+        assertEquals(0, widths.getWidth(""));
+    }
+
+    @Test
+    public void cachesWidthsByText() {
+        TextWidths widths = new TextWidths(new int['~' - ' ' + 1], 9);
+        widths.getWidth("CPPASTName");
+        widths.getWidth("CPPASTName");
+        widths.getWidth("CPPASTIdExpression");
+        assertEquals(2, widths.getCachedCount());
+    }
+
+    @Test
+    public void boundsCachedTexts() {
+        TextWidths widths = new TextWidths(new int['~' - ' ' + 1], 9);
+        for (int i = 0; i < 10100; i++) {
+            widths.getWidth("name" + i);
+        }
+        assertEquals(10000, widths.getCachedCount());
+        widths.getWidth("CPPASTName");
+        assertEquals(10000, widths.getCachedCount());
+    }
+
+    @Test
+    public void prefetchMeasuresUncachedTextsAtOnce() {
+        final List<List<String>> batches = new ArrayList<>();
+        TextWidths widths = new TextWidths(new int['~' - ' ' + 1], 9, new TextWidths.Measurer() {
+
+            @Override
+            public boolean measure(String[] texts, int[] widths) {
+                batches.add(Arrays.asList(texts));
+                for (int i = 0; i < texts.length; i++) {
+                    widths[i] = texts[i].length() * 3 + 1;
+                }
+                return true;
+            }
+        });
+        assertEquals(7, widths.getWidth("ab"));
+        widths.prefetch(Arrays.asList("ab", "abc", "abc", "abcd"));
+        assertEquals(Arrays.asList(Arrays.asList("ab"), Arrays.asList("abc", "abcd")), batches);
+        assertEquals(10, widths.getWidth("abc"));
+        assertEquals(13, widths.getWidth("abcd"));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void estimatesWidthsIfMeasurerFails() {
+        int[] advances = new int['~' - ' ' + 1];
+        advances['a' - ' '] = 6;
+        TextWidths widths = new TextWidths(advances, 9, new TextWidths.Measurer() {
+
+            @Override
+            public boolean measure(String[] texts, int[] widths) {
+                return false;
+            }
+        });
+        assertEquals(12, widths.getWidth("aa"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIncompleteAdvances() {
+        new TextWidths(new int[10], 9);
+    }
+}
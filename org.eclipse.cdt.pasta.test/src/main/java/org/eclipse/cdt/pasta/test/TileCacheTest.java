@@ -0,0 +1,73 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.cdt.pasta.plugin.TileCache;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TileCacheTest {
+
+    private final List<String> disposed = new ArrayList<>();
+    private TileCache<String> tiles;
+
+    @Before
+    public void setUp() {
+        tiles = new TileCache<>(100, 3, new TileCache.Disposer<String>() {
+
+            @Override
+            public void dispose(String tile) {
+                disposed.add(tile);
+            }
+        });
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTile() {
+        tiles.put(0, 0, "a");
+        tiles.put(1, 0, "b");
+        tiles.put(0, 1, "c");
+        tiles.get(0, 0);
+        tiles.put(-1, -1, "d");
+        assertEquals(3, tiles.size());
+        assertEquals(Arrays.asList("b"), disposed);
+        assertNull(tiles.get(1, 0));
+        assertSame("a", tiles.get(0, 0));
+        assertSame("d", tiles.get(-1, -1));
+    }
+
+    @Test
+    public void invalidatesIntersectingTiles() {
+        tiles.put(0, 0, "a");
+        tiles.put(1, 0, "b");
+        tiles.put(-1, 0, "c");
+        tiles.invalidate(new Rectangle(-10, 50, 20, 10));
+        assertEquals(Arrays.asList("a", "c"), sorted(disposed));
+        assertSame("b", tiles.get(1, 0));
+        tiles.invalidate(new Rectangle(-100000, -100000, 200000, 200000));
+        assertEquals(0, tiles.size());
+    }
+
+    @Test
+    public void mapsCoordinatesToTiles() {
+        assertEquals(0, tiles.indexOf(0));
+        assertEquals(0, tiles.indexOf(99));
+        assertEquals(1, tiles.indexOf(100));
+        assertEquals(-1, tiles.indexOf(-1));
+        assertEquals(-2, tiles.indexOf(-101));
+    }
+
+    private static List<String> sorted(List<String> strings) {
+        List<String> result = new ArrayList<>(strings);
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.eclipse.cdt.pasta.test.TestNodes.name;
+import static org.eclipse.cdt.pasta.test.TestNodes.node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.IASTCompoundStatement;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.pasta.plugin.DiffTree;
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.TreeDiff;
+import org.eclipse.cdt.pasta.plugin.TreeDiff.Change;
+import org.junit.Test;
+
+public class TreeDiffTest {
+
+    @Test
+    public void identicalTreesHaveNoChanges() {
+        IASTTranslationUnit before = translationUnit(declaration("a", 0), declaration("b", 7));
+        IASTTranslationUnit after = translationUnit(declaration("a", 0), declaration("b", 7));
+        TreeDiff diff = TreeDiff.compute(before, after);
+        for (Change change : Change.values()) {
+            assertEquals(0, diff.getCount(change));
+        }
+        assertSame(before.getChildren()[1], diff.getMatch(after.getChildren()[1]));
+        assertSame(after, diff.getMatch(before));
+        assertEquals(0, diff.getChangedRoots().size());
+    }
+
+    @Test
+    public void detectsInsertedAndUpdatedNodes() {
+        // int a; int b; -> int a; int x; int c;
+        IASTTranslationUnit before = translationUnit(declaration("a", 0), declaration("b", 7));
+        IASTTranslationUnit after = translationUnit(declaration("a", 0), declaration("x", 7), declaration("c", 14));
+        TreeDiff diff = TreeDiff.compute(before, after);
+        IASTNode renamed = after.getChildren()[1].getChildren()[0];
+        IASTNode inserted = after.getChildren()[2];
+        assertEquals(Change.UPDATED, diff.getChange(renamed));
+        assertSame(before.getChildren()[1].getChildren()[0], diff.getMatch(renamed));
+        assertNull(diff.getChange(after.getChildren()[1]));
+        assertEquals(Change.INSERTED, diff.getChange(inserted));
+        assertEquals(Change.INSERTED, diff.getChange(inserted.getChildren()[0]));
+        assertEquals(2, diff.getCount(Change.INSERTED));
+        assertEquals(1, diff.getCount(Change.UPDATED));
+        assertEquals(0, diff.getCount(Change.DELETED));
+        List<IASTNode> roots = diff.getChangedRoots();
+        assertEquals(2, roots.size());
+        assertSame(renamed, roots.get(0));
+        assertSame(inserted, roots.get(1));
+    }
+
+    @Test
+    public void detectsMovedSubtrees() {
+        // { int a; int b; } { int c; } -> { int b; } { int c; int a; }
+        IASTTranslationUnit before = translationUnit(block(declaration("a", 2), declaration("b", 9)), block(declaration("c", 18)));
+        IASTTranslationUnit after = translationUnit(block(declaration("b", 2)), block(declaration("c", 11), declaration("a", 18)));
+        TreeDiff diff = TreeDiff.compute(before, after);
+        IASTNode moved = after.getChildren()[1].getChildren()[1];
+        assertEquals(Change.MOVED, diff.getChange(moved));
+        assertSame(before.getChildren()[0].getChildren()[0], diff.getMatch(moved));
+        assertNull(diff.getChange(moved.getChildren()[0]));
+        assertSame(before.getChildren()[0], diff.getMatch(after.getChildren()[0]));
+        assertEquals(1, diff.getCount(Change.MOVED));
+        assertEquals(0, diff.getCount(Change.INSERTED));
+        assertEquals(0, diff.getCount(Change.DELETED));
+    }
+
+    @Test
+    public void pairsRepeatedSubtreesWithinTheirParents() {
+        // { int x; int a; } { int x; int b; } -> { int x; int x; int a; } { int x; int c; }
+        IASTTranslationUnit before = translationUnit(block(declaration("x", 2), declaration("a", 9)), block(declaration("x", 18), declaration("b", 25)));
+        IASTTranslationUnit after = translationUnit(block(declaration("x", 2), declaration("x", 9), declaration("a", 16)), block(declaration("x", 25), declaration("c", 32)));
+        TreeDiff diff = TreeDiff.compute(before, after);
+        assertEquals(0, diff.getCount(Change.MOVED));
+        assertEquals(0, diff.getCount(Change.DELETED));
+        assertEquals(2, diff.getCount(Change.INSERTED));
+        assertEquals(1, diff.getCount(Change.UPDATED));
+        assertSame(before.getChildren()[0].getChildren()[0], diff.getMatch(after.getChildren()[0].getChildren()[0]));
+        assertEquals(Change.INSERTED, diff.getChange(after.getChildren()[0].getChildren()[1]));
+        assertSame(before.getChildren()[1].getChildren()[0], diff.getMatch(after.getChildren()[1].getChildren()[0]));
+    }
+
+    @Test
+    public void diffTreeShowsDeletedNodesInPlace() {
+        // int a; int b; int c; -> int a; int c;
+        IASTTranslationUnit before = translationUnit(declaration("a", 0), declaration("b", 7), declaration("c", 14));
+        IASTTranslationUnit after = translationUnit(declaration("a", 0), declaration("c", 7));
+        TreeDiff diff = TreeDiff.compute(before, after);
+        assertEquals(2, diff.getCount(Change.DELETED));
+        DiffTree tree = new DiffTree(after, diff);
+        NodeFigure root = tree.getRoot();
+        List<NodeFigure> children = root.getChildren();
+        assertEquals(3, children.size());
+        assertSame(after.getChildren()[0], children.get(0).getASTNode());
+        assertSame(before.getChildren()[1], children.get(1).getASTNode());
+        assertSame(after.getChildren()[1], children.get(2).getASTNode());
+        assertEquals(Change.DELETED, tree.getChange(children.get(1)));
+        assertNull(tree.getChange(children.get(2)));
+    }
+
+    private static IASTTranslationUnit translationUnit(IASTNode... children) {
+        return node(IASTTranslationUnit.class, 0, 21, true, children);
+    }
+
+    private static IASTNode block(IASTNode... declarations) {
+        return node(IASTCompoundStatement.class, 0, 7 * declarations.length + 2, true, declarations);
+    }
+
+    private static IASTNode declaration(String identifier, int offset) {
+        return node(IASTNode.class, offset, 6, true, name(identifier, offset + 4));
+    }
+}
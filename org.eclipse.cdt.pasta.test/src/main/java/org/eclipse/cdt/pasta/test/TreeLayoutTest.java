@@ -0,0 +1,157 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.TreeLayout;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TreeLayoutTest {
+
+    private TreeLayout layout;
+
+    @Before
+    public void setUp() {
+        layout = new TreeLayout(1f, 20f, 60, 20);
+    }
+
+    @Test
+    public void singleFigureIsCentered() {
+        NodeFigure root = figure(40);
+        layout.layout(root);
+        assertEquals(new Rectangle(-20, 0, 40, 20), root.getBounds());
+        assertEquals(new Rectangle(-20, 0, 40, 20), layout.getBounds(root));
+    }
+
+    @Test
+    public void parentIsCenteredAboveChildren() {
+        NodeFigure root = figure(10);
+        NodeFigure left = addChild(root, 20);
+        NodeFigure middle = addChild(root, 20);
+        NodeFigure right = addChild(root, 20);
+        root.setExpanded(true);
+        layout.layout(root);
+        assertEquals(-5, root.getX());
+        assertEquals(new Rectangle(-31, 60, 20, 20), left.getBounds());
+        assertEquals(new Rectangle(-10, 60, 20, 20), middle.getBounds());
+        assertEquals(new Rectangle(11, 60, 20, 20), right.getBounds());
+        assertEquals(new Rectangle(-31, 0, 62, 80), layout.getBounds(root));
+    }
+
+    @Test
+    public void subtreesKeepSubtreeDistance() {
+        NodeFigure root = figure(10);
+        NodeFigure left = addChild(root, 10);
+        NodeFigure right = addChild(root, 10);
+        NodeFigure leftChild = addChild(left, 50);
+        NodeFigure rightChild = addChild(right, 50);
+        root.setExpanded(true);
+        left.setExpanded(true);
+        right.setExpanded(true);
+        layout.layout(root);
+        assertEquals(20, rightChild.getX() - (leftChild.getX() + leftChild.getWidth()));
+    }
+
+    @Test
+    public void collapsedChildrenAreIgnored() {
+        NodeFigure root = figure(10);
+        addChild(root, 100);
+        layout.layout(root);
+        assertEquals(new Rectangle(-5, 0, 10, 20), layout.getBounds(root));
+    }
+
+    @Test
+    public void incrementalUpdateMatchesFullLayout() {
+        List<NodeFigure> figures = new ArrayList<>();
+        NodeFigure root = figure(30);
+        figures.add(root);
+        for (int i = 0; i < 200; i++) {
+            NodeFigure parent = figures.get((i * 7) % figures.size());
+            figures.add(addChild(parent, 10 + (i * 13) % 40));
+        }
+        layout.layout(root);
+        for (int i = 0; i < figures.size(); i += 3) {
+            NodeFigure figure = figures.get((i * 11) % figures.size());
+            figure.setExpanded(!figure.isExpanded());
+            layout.update(figure);
+        }
+        Rectangle incrementalBounds = layout.getBounds(root);
+        List<Rectangle> incremental = visibleBounds(root, new ArrayList<Rectangle>());
+
+        layout.layout(root);
+        assertEquals(layout.getBounds(root), incrementalBounds);
+        assertEquals(visibleBounds(root, new ArrayList<Rectangle>()), incremental);
+    }
+
+    @Test
+    public void updateReportsChangedFigures() {
+        List<NodeFigure> figures = new ArrayList<>();
+        NodeFigure root = figure(30);
+        figures.add(root);
+        for (int i = 0; i < 100; i++) {
+            NodeFigure parent = figures.get((i * 5) % figures.size());
+            figures.add(addChild(parent, 10 + (i * 17) % 40));
+        }
+        layout.layout(root);
+        for (int i = 0; i < figures.size(); i += 2) {
+            NodeFigure figure = figures.get((i * 13) % figures.size());
+            Map<NodeFigure, Rectangle> before = visibleFigures(root, new HashMap<NodeFigure, Rectangle>());
+            figure.setExpanded(!figure.isExpanded());
+            TreeLayout.Changes changes = layout.update(figure);
+            Map<NodeFigure, Rectangle> after = visibleFigures(root, new HashMap<NodeFigure, Rectangle>());
+
+            Set<NodeFigure> removed = new HashSet<>(before.keySet());
+            removed.removeAll(after.keySet());
+            assertEquals(removed, new HashSet<>(changes.getRemoved()));
+            Set<NodeFigure> placed = new HashSet<>(changes.getPlaced());
+            assertTrue(after.keySet().containsAll(placed));
+            for (Map.Entry<NodeFigure, Rectangle> entry : after.entrySet()) {
+                NodeFigure current = entry.getKey();
+                NodeFigure parent = current.getParent();
+                boolean moved = !entry.getValue().equals(before.get(current));
+                boolean edgeMoved = parent != null && !after.get(parent).equals(before.get(parent));
+                if (moved || edgeMoved) {
+                    assertTrue(placed.contains(current));
+                }
+            }
+        }
+    }
+
+    private Map<NodeFigure, Rectangle> visibleFigures(NodeFigure figure, Map<NodeFigure, Rectangle> bounds) {
+        bounds.put(figure, figure.getBounds());
+        for (NodeFigure child : figure.getVisibleChildren()) {
+            visibleFigures(child, bounds);
+        }
+        return bounds;
+    }
+
+    private List<Rectangle> visibleBounds(NodeFigure figure, List<Rectangle> bounds) {
+        bounds.add(figure.getBounds());
+        for (NodeFigure child : figure.getVisibleChildren()) {
+            visibleBounds(child, bounds);
+        }
+        return bounds;
+    }
+
+    private NodeFigure addChild(NodeFigure parent, int width) {
+        NodeFigure child = figure(width);
+        parent.addChild(child);
+        return child;
+    }
+
+    private NodeFigure figure(int width) {
+        NodeFigure figure = new NodeFigure(null, "", true);
+        figure.setWidth(width);
+        return figure;
+    }
+}
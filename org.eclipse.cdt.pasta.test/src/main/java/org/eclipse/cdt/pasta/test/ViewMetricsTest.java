@@ -0,0 +1,58 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.pasta.plugin.MetricsListener;
+import org.eclipse.cdt.pasta.plugin.ViewMetrics;
+import org.eclipse.cdt.pasta.plugin.ViewMetrics.Phase;
+import org.junit.Test;
+
+public class ViewMetricsTest {
+
+    @Test
+    public void recordsPhases() {
+        ViewMetrics metrics = new ViewMetrics();
+        metrics.start(Phase.LAYOUT).stop();
+        metrics.start(Phase.LAYOUT).stop();
+        metrics.start(Phase.PAINT).stop();
+        metrics.setNodeCount(120);
+        metrics.setFigureCount(7);
+        assertEquals(2, metrics.getCount(Phase.LAYOUT));
+        assertEquals(1, metrics.getCount(Phase.PAINT));
+        assertEquals(0, metrics.getCount(Phase.PARSE));
+        assertTrue(metrics.getTotalNanos(Phase.LAYOUT) >= metrics.getLastNanos(Phase.LAYOUT));
+        String line = metrics.format();
+        assertTrue(line, line.contains("(2 passes)"));
+        assertTrue(line, line.contains("120 nodes, 7 figures"));
+    }
+
+    @Test
+    public void notifiesListeners() {
+        ViewMetrics metrics = new ViewMetrics();
+        final List<Phase> phases = new ArrayList<>();
+        final int[] shown = new int[1];
+        metrics.addListener(new MetricsListener() {
+
+            @Override
+            public void phaseFinished(ViewMetrics metrics, Phase phase, long nanos, long allocatedBytes) {
+                phases.add(phase);
+            }
+
+            @Override
+            public void treeShown(ViewMetrics metrics) {
+                shown[0]++;
+            }
+        });
+        metrics.start(Phase.PARSE).stop();
+        metrics.start(Phase.BUILD).stop();
+        metrics.treeShown();
+        assertEquals(2, phases.size());
+        assertEquals(Phase.PARSE, phases.get(0));
+        assertEquals(Phase.BUILD, phases.get(1));
+        assertEquals(1, shown[0]);
+    }
+}
@@ -0,0 +1,141 @@
+package org.eclipse.cdt.pasta.test;
+
+import static org.eclipse.cdt.pasta.test.TestNodes.name;
+import static org.eclipse.cdt.pasta.test.TestNodes.node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.pasta.plugin.NodeFigure;
+import org.eclipse.cdt.pasta.plugin.ViewTree;
+import org.junit.Test;
+
+public class ViewTreeTest {
+
+    @Test
+    public void adoptKeepsFiguresOfUnchangedSubtrees() {
+        // int a; int b;
+        ViewTree previous = new ViewTree(translationUnit(declaration("a", 0), declaration("b", 7)));
+        NodeFigure root = previous.getRoot();
+        NodeFigure first = expand(previous, root).get(0);
+        expand(previous, first);
+        // int a; int b; int c;
+        IASTTranslationUnit ast = translationUnit(declaration("a", 0), declaration("b", 7), declaration("c", 14));
+        ViewTree tree = new ViewTree(ast);
+        List<NodeFigure> changed = tree.adopt(previous);
+        assertSame(root, tree.getRoot());
+        assertSame(ast, root.getASTNode());
+        assertEquals(1, changed.size());
+        assertSame(root, changed.get(0));
+        assertEquals(3, root.getChildren().size());
+        assertSame(first, root.getChildren().get(0));
+        assertSame(ast.getChildren()[0], first.getASTNode());
+        assertTrue(first.isExpanded());
+        assertFalse(root.getChildren().get(2).isMaterialized());
+    }
+
+    @Test
+    public void adoptReplacesChangedLeaves() {
+        ViewTree previous = new ViewTree(translationUnit(declaration("a", 0)));
+        NodeFigure declaration = expand(previous, previous.getRoot()).get(0);
+        NodeFigure name = expand(previous, declaration).get(0);
+        NodeFigure leaf = expand(previous, name).get(0);
+        ViewTree tree = new ViewTree(translationUnit(declaration("x", 0)));
+        List<NodeFigure> changed = tree.adopt(previous);
+        assertEquals(1, changed.size());
+        assertSame(name, changed.get(0));
+        NodeFigure newLeaf = name.getChildren().get(0);
+        assertNotSame(leaf, newLeaf);
+        assertEquals("x", newLeaf.getText());
+        assertFalse(leaf.isAttachedTo(tree.getRoot()));
+        assertTrue(newLeaf.isAttachedTo(tree.getRoot()));
+    }
+
+    @Test
+    public void compactModeMergesSingleChildChains() {
+        IASTTranslationUnit ast = translationUnit(declaration("a", 0), declaration("b", 7));
+        IASTNode declaration = ast.getChildren()[0];
+        IASTNode name = declaration.getChildren()[0];
+        ViewTree tree = new ViewTree(ast, new ViewTree.Options(true, ViewTree.Options.UNLIMITED_DEPTH));
+        List<NodeFigure> children = expand(tree, tree.getRoot());
+        assertEquals(2, children.size());
+        NodeFigure figure = children.get(0);
+        assertEquals(declaration.getClass().getSimpleName() + " > " + name.getClass().getSimpleName() + ": a", figure.getText());
+        assertTrue(expand(tree, figure).isEmpty());
+        assertTrue(tree.shows(figure, name));
+        assertFalse(tree.shows(children.get(1), name));
+        assertSame(figure, tree.reveal(name));
+    }
+
+    @Test
+    public void compactAdoptKeepsUnchangedChains() {
+        ViewTree.Options options = new ViewTree.Options(true, ViewTree.Options.UNLIMITED_DEPTH);
+        ViewTree previous = new ViewTree(translationUnit(declaration("a", 0), declaration("b", 7)), options);
+        NodeFigure first = expand(previous, previous.getRoot()).get(0);
+        NodeFigure second = previous.getRoot().getChildren().get(1);
+        ViewTree tree = new ViewTree(translationUnit(declaration("a", 0), declaration("x", 7)), options);
+        tree.adopt(previous);
+        List<NodeFigure> children = tree.getRoot().getChildren();
+        assertSame(first, children.get(0));
+        assertNotSame(second, children.get(1));
+        assertTrue(children.get(1).getText().endsWith(": x"));
+    }
+
+    @Test
+    public void compactAdoptReplacesChangedRootChain() {
+        ViewTree.Options options = new ViewTree.Options(true, ViewTree.Options.UNLIMITED_DEPTH);
+        ViewTree previous = new ViewTree(translationUnit(declaration("a", 0)), options);
+        NodeFigure previousRoot = previous.getRoot();
+        previousRoot.setExpanded(true);
+        ViewTree tree = new ViewTree(translationUnit(declaration("x", 0)), options);
+        List<NodeFigure> changed = tree.adopt(previous);
+        NodeFigure root = tree.getRoot();
+        assertNotSame(previousRoot, root);
+        assertTrue(root.getText().endsWith(": x"));
+        assertTrue(root.isExpanded());
+        assertTrue(changed.contains(root));
+    }
+
+    @Test
+    public void compactAdoptDropsChildrenOfEmptiedChain() {
+        ViewTree.Options options = new ViewTree.Options(true, ViewTree.Options.UNLIMITED_DEPTH);
+        ViewTree previous = new ViewTree(translationUnit(declaration("a", 0), declaration("b", 7)), options);
+        NodeFigure first = expand(previous, previous.getRoot()).get(0);
+        ViewTree tree = new ViewTree(translationUnit(), options);
+        List<NodeFigure> changed = tree.adopt(previous);
+        NodeFigure root = tree.getRoot();
+        assertTrue(root.getChildren().isEmpty());
+        assertTrue(changed.contains(root));
+        assertFalse(first.isAttachedTo(root));
+    }
+
+    @Test
+    public void maxDepthLimitsMaterialization() {
+        IASTTranslationUnit ast = translationUnit(declaration("a", 0));
+        ViewTree tree = new ViewTree(ast, new ViewTree.Options(false, 1));
+        NodeFigure declaration = expand(tree, tree.getRoot()).get(0);
+        assertTrue(expand(tree, declaration).isEmpty());
+        assertFalse(declaration.isMaterialized());
+        assertSame(declaration, tree.reveal(ast.getChildren()[0].getChildren()[0]));
+    }
+
+    private static IASTTranslationUnit translationUnit(IASTNode... declarations) {
+        return node(IASTTranslationUnit.class, 0, 21, true, declarations);
+    }
+
+    private static IASTNode declaration(String identifier, int offset) {
+        return node(IASTNode.class, offset, 6, true, name(identifier, offset + 4));
+    }
+
+    private static List<NodeFigure> expand(ViewTree tree, NodeFigure figure) {
+        tree.materializeChildren(figure);
+        figure.setExpanded(true);
+        return figure.getChildren();
+    }
+}